@@ -0,0 +1,41 @@
+package com.google.sps.benchmarks;
+
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.sps.data.Comments;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of top-N listings, which aren't cached: before every call caches of listings and comments
+ * are dropped (memcache is cleared and the new Comments is created), so every call queries the datastore.
+ * Results are comparable with ListingsBenchmark, which measures the same listings with warm caches.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColdListingsBenchmark extends CommentsDataset {
+    @Param({"10", "100"})
+    public int quantity;
+
+    @Setup(Level.Invocation)
+    public void dropCaches() {
+        MemcacheServiceFactory.getMemcacheService().clearAll();
+        comments = new Comments();
+    }
+
+    @Benchmark
+    public ArrayList<Map.Entry<Long, Comments.Comment>> sortByDate() {
+        return comments.sortByDate(quantity);
+    }
+
+    @Benchmark
+    public ArrayList<Map.Entry<Long, Comments.Comment>> sortByRating() {
+        return comments.sortByRating(quantity);
+    }
+}
@@ -0,0 +1,37 @@
+package com.google.sps.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of writes to comments: adding comments and voting.
+ * Added comments stay in the dataset, so it grows during the measurement.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentsBenchmark extends CommentsDataset {
+    @Benchmark
+    public void addComment() {
+        comments.addComment("benchmark-author", "benchmark comment", new Date());
+    }
+
+    /**
+     * Every vote is recorded together with the change of a rating's shard, ratings are recalculated
+     * periodically, as it's done in production. Voters are random, so most votes aren't repeated.
+     */
+    @Benchmark
+    public void vote() {
+        String userID = "voter-" + random.nextLong();
+        if (random.nextBoolean()) {
+            comments.upvoteComment(userID, randomID());
+        } else {
+            comments.downvoteComment(userID, randomID());
+        }
+    }
+}
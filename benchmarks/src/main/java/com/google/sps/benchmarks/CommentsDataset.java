@@ -0,0 +1,70 @@
+package com.google.sps.benchmarks;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.data.Comments;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Base state of benchmarks: the local datastore and memcache stubs, filled with 'datasetSize' comments.
+ * Comments get different dates and ratings, so sorting by both of them is meaningful.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+@State(Scope.Thread)
+public abstract class CommentsDataset {
+    private static final long DATE_STEP_MILLIS = 60000;
+    private static final int MAX_INITIAL_RATING = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    public int datasetSize;
+
+    private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+            new LocalDatastoreServiceTestConfig().setNoStorage(true).setNoIndexAutoGen(true),
+            new LocalMemcacheServiceTestConfig());
+    protected final Random random = new Random(42);
+    protected Comments comments;
+    /** Ids of entities of all comments in the dataset. */
+    protected long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUpDataset() {
+        helper.setUp();
+        comments = new Comments();
+
+        List<Comments.Comment> dataset = new ArrayList<>(datasetSize);
+        for (int i = 0; i < datasetSize; i++) {
+            dataset.add(new Comments.Comment(new Date(i * DATE_STEP_MILLIS), "comment number " + i,
+                    "author-" + random.nextInt(100), random.nextInt(MAX_INITIAL_RATING)));
+        }
+        comments.addComments(dataset);
+
+        Query query = new Query(Comments.COMMENT_ENTITY_KIND).setKeysOnly();
+        ids = DatastoreServiceFactory.getDatastoreService().prepare(query)
+                .asList(FetchOptions.Builder.withDefaults()).stream()
+                .mapToLong(entity -> entity.getKey().getId())
+                .toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownDataset() {
+        helper.tearDown();
+    }
+
+    /**
+     * Returns the id of the random comment from the dataset.
+     * @return Comments' entity id
+     */
+    protected long randomID() {
+        return ids[random.nextInt(ids.length)];
+    }
+}
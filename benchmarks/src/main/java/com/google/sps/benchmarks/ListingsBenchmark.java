@@ -0,0 +1,62 @@
+package com.google.sps.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.sps.data.Comments;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of reading comments: top-N listings, as they are served by CommentsServlet
+ * (i.e. with caches), full scans, which go to the datastore every time, and JSON serialization of listings.
+ * Listings are cached after the first call, so sortByDate and sortByRating measure cache hits,
+ * see ColdListingsBenchmark for listings, which are loaded from the datastore.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListingsBenchmark extends CommentsDataset {
+    @Param({"10", "100"})
+    public int quantity;
+
+    private final Gson gson = new Gson();
+    private ArrayList<Map.Entry<Long, Comments.Comment>> listing;
+
+    @Setup(Level.Trial)
+    public void setUpListing() {
+        listing = comments.sortByDate(quantity);
+    }
+
+    @Benchmark
+    public ArrayList<Map.Entry<Long, Comments.Comment>> sortByDate() {
+        return comments.sortByDate(quantity);
+    }
+
+    @Benchmark
+    public ArrayList<Map.Entry<Long, Comments.Comment>> sortByRating() {
+        return comments.sortByRating(quantity);
+    }
+
+    /** Reads the first 'quantity' comments with the lazy stream, which bypasses caches of listings. */
+    @Benchmark
+    public void streamByDate(Blackhole blackhole) {
+        int read = 0;
+        for (Map.Entry<Long, Comments.Comment> comment : comments.streamByDate()) {
+            blackhole.consume(comment);
+            if (++read == quantity) {
+                break;
+            }
+        }
+    }
+
+    @Benchmark
+    public String toJson() {
+        return gson.toJson(listing);
+    }
+}
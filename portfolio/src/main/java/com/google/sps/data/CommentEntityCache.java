@@ -0,0 +1,119 @@
+package com.google.sps.data;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches comments by ids of their entities, so that listings can fetch from
+ * the datastore only comments, which aren't cached. The cache has the bounded size,
+ * comments are evicted in LRU order and expire after the specified time.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class CommentEntityCache {
+    /**
+     * Represents the cached comment and the time, when it expires.
+     */
+    private static class CachedComment {
+        private final Comments.Comment comment;
+        private final long expirationTime;
+
+        CachedComment(Comments.Comment comment, long expirationTime) {
+            this.comment = comment;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private final Clock clock;
+    private final long ttlMillis;
+    private final LinkedHashMap<Long, CachedComment> comments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Creates the cache.
+     * @param clock         Clock, which is used to expire comments.
+     * @param maxComments   Maximal number of cached comments.
+     * @param ttlMillis     Time in milliseconds, after which a comment expires.
+     */
+    public CommentEntityCache(Clock clock, int maxComments, long ttlMillis) {
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.comments = new LinkedHashMap<Long, CachedComment>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedComment> eldest) {
+                return size() > maxComments;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached comment.
+     * @param id    Comments' entity id
+     * @return Comment or null, if it isn't cached or expired.
+     */
+    public synchronized Comments.Comment get(long id) {
+        CachedComment cached = comments.get(id);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (cached.expirationTime <= clock.millis()) {
+            comments.remove(id);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.comment;
+    }
+
+    /**
+     * Caches the comment.
+     * @param id        Comments' entity id
+     * @param comment   The comment.
+     */
+    public synchronized void put(long id, Comments.Comment comment) {
+        comments.put(id, new CachedComment(comment, clock.millis() + ttlMillis));
+    }
+
+    /**
+     * Updates the rating of the cached comment, if it's cached.
+     * @param id        Comments' entity id
+     * @param rating    The new rating.
+     */
+    public synchronized void updateRating(long id, long rating) {
+        comments.computeIfPresent(id,
+                (key, cached) -> new CachedComment(cached.comment.withRating(rating), cached.expirationTime));
+    }
+
+    /**
+     * Removes the comment from the cache.
+     * @param id        Comments' entity id
+     */
+    public synchronized void remove(long id) {
+        comments.remove(id);
+    }
+
+    /**
+     * Removes all comments from the cache.
+     */
+    public synchronized void clear() {
+        comments.clear();
+    }
+
+    /**
+     * Returns the number of comments, which were found in the cache.
+     * @return Number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of comments, which had to be fetched from the datastore.
+     * @return Number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
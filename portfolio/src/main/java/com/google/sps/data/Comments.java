@@ -4,7 +4,10 @@ import com.google.appengine.api.datastore.*;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.repackaged.com.google.common.annotations.VisibleForTesting;
 
+import java.io.Serializable;
+import java.time.Clock;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a datastore of comments.
@@ -16,12 +19,42 @@ public class Comments {
     public static final String RATING = "rating";
     public static final String TEXT = "comment-text";
     public static final String AUTHOR_ID = "author-id";
+    /** Time, when the comment was put to the datastore (unlike 'date', which can be older for imported comments). */
+    public static final String CREATED = "created";
+    /** Part of the rating, which isn't stored in shards (votes made before shards were introduced). */
+    public static final String RATING_OFFSET = "rating-offset";
+    /** Minimal time between two recalculations of the 'rating' property from shards. */
+    public static final long RATINGS_MATERIALIZATION_INTERVAL_MILLIS = 60000;
+    /** Maximal number of top-N listings in the cache. */
+    public static final int LISTINGS_CACHE_SIZE = 32;
+    /** Time, during which a cached top-N listing is served without going to the datastore. */
+    public static final long LISTINGS_CACHE_TTL_MILLIS = 30000;
+    /** Maximal number of comments in the entity cache. */
+    public static final int ENTITY_CACHE_SIZE = 1000;
+    /** Maximal number of entities in one batched put (it's the datastore's limit). */
+    public static final int MAX_BATCH_PUT_SIZE = 500;
+    /** Number of attempts to put a batch of comments. */
+    private static final int MAX_BATCH_PUT_ATTEMPTS = 3;
+    /** Delay before the first retry of the failed put, next delays are longer. */
+    private static final long BATCH_PUT_RETRY_DELAY_MILLIS = 100;
+    /** Minimal time between two catch-ups of the search index with comments added by other instances. */
+    public static final long SEARCH_INDEX_REFRESH_INTERVAL_MILLIS = 5000;
+    /** Minimal time between two rebuilds of the search index after deletions of comments by other instances. */
+    public static final long SEARCH_INDEX_REBUILD_INTERVAL_MILLIS = 60000;
+    /** Time, by which the catch-up looks back, so comments, which became visible to queries late, aren't missed. */
+    private static final long SEARCH_INDEX_REFRESH_MARGIN_MILLIS = 60000;
+    /** Maximal number of comments in one page. */
+    public static final int MAX_PAGE_SIZE = 100;
+    /** Maximal number of dirty shards, which are looked at by one materialization of ratings. */
+    private static final int MAX_MATERIALIZED_SHARDS = 500;
 
     /**
      * Represents the comment.
      */
     @VisibleForTesting
-    public static class Comment {
+    public static class Comment implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private final Date date;
         private final String text;
         private final String authorID;
@@ -48,6 +81,15 @@ public class Comments {
             return text;
         }
 
+        /**
+         * Creates the copy of this comment with another rating.
+         * @param rating    The new rating.
+         * @return A Comment object with the same date, text and author.
+         */
+        public Comment withRating(long rating) {
+            return new Comment(date, text, authorID, rating);
+        }
+
         /**
          * Gets the comment from comment entity.
          * @param entity    Entity of the "Comment" kind
@@ -88,10 +130,145 @@ public class Comments {
         }
     }
 
+    /**
+     * Represents one page of sorted comments.
+     */
+    public static class CommentsPage {
+        private final ArrayList<Map.Entry<Long, Comment>> comments;
+        private final String nextCursor;
+
+        /** Creates the page of comments.
+         * @param comments      List of pairs (Comment id, Comment object) on this page.
+         * @param nextCursor    Opaque token of the next page or null, if it's the last page.
+         */
+        public CommentsPage(ArrayList<Map.Entry<Long, Comment>> comments, String nextCursor) {
+            this.comments = comments;
+            this.nextCursor = nextCursor;
+        }
+
+        public ArrayList<Map.Entry<Long, Comment>> getComments() {
+            return comments;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
     private final DatastoreService datastore;
+    private final RatingShards ratingShards;
+    private final VoteLedger voteLedger;
+    private final FlushSchedule ratingsMaterializationSchedule;
+    private final CommentsCache listingsCache;
+    private final CommentEntityCache entityCache;
+    private final SharedCommentsCache sharedCache;
+    private final Clock clock;
+    /** Index for the full-text search, it's built by rebuildSearchIndex() during the warmup. */
+    private volatile CommentsSearchIndex searchIndex = null;
+    /** True, if other instances changed comments, so the search index can miss them. */
+    private volatile boolean searchIndexOutdated = false;
+    /** Creation time, after which comments are queried by the next catch-up of the search index. */
+    private volatile long searchIndexWatermark;
+    private final FlushSchedule searchIndexRefreshSchedule;
+    /** Version of deletions in the shared cache, which the search index corresponds to. */
+    private final AtomicLong searchIndexDeletionsVersion = new AtomicLong(Long.MIN_VALUE);
+    private final FlushSchedule searchIndexRebuildSchedule;
+    /** Incremented after every change of comments, which are visible to readers. */
+    private final AtomicLong generation = new AtomicLong();
+    /** Version of comments in the shared cache, which listings in the local cache correspond to. */
+    private final AtomicLong listingsCacheVersion = new AtomicLong(Long.MIN_VALUE);
 
     public Comments() {
-        this.datastore = DatastoreServiceFactory.getDatastoreService();
+        this(Clock.systemUTC());
+    }
+
+    /** Creates the datastore of comments.
+     * @param clock     Clock, which is used to decide when ratings must be recalculated.
+     */
+    public Comments(Clock clock) {
+        this.datastore = new CountingDatastoreService(DatastoreServiceFactory.getDatastoreService());
+        this.clock = clock;
+        this.ratingShards = new RatingShards(this.datastore);
+        this.voteLedger = new VoteLedger(this.datastore, this.ratingShards);
+        this.ratingsMaterializationSchedule = new FlushSchedule(clock, RATINGS_MATERIALIZATION_INTERVAL_MILLIS);
+        this.listingsCache = new CommentsCache(clock, LISTINGS_CACHE_SIZE, LISTINGS_CACHE_TTL_MILLIS);
+        this.entityCache = new CommentEntityCache(clock, ENTITY_CACHE_SIZE, LISTINGS_CACHE_TTL_MILLIS);
+        this.sharedCache = new SharedCommentsCache(clock);
+        this.searchIndexRefreshSchedule = new FlushSchedule(clock, SEARCH_INDEX_REFRESH_INTERVAL_MILLIS);
+        this.searchIndexRebuildSchedule = new FlushSchedule(clock, SEARCH_INDEX_REBUILD_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Returns the generation of comments, which is increased after every visible change
+     * (added or deleted comment, recalculated rating), so the data with the same generation is the same.
+     * It's the version of comments in the shared cache, so it's the same for all instances,
+     * or the local generation, if the shared cache is unavailable.
+     * @return Current generation of comments.
+     */
+    public long getGeneration() {
+        Long version = this.sharedCache.getVersion();
+        return version != null ? version : generation.get();
+    }
+
+    /**
+     * Increases the generation of comments after the change.
+     * Must be called after local caches are updated.
+     */
+    private void onCommentsChanged() {
+        this.generation.incrementAndGet();
+        Long version = this.sharedCache.incrementVersion();
+        if (version != null) {
+            // the local cache is already updated, so it's up to date, if nobody else changed comments meanwhile
+            this.listingsCacheVersion.compareAndSet(version - 1, version);
+        }
+    }
+
+    /**
+     * Invalidates local caches of listings and comments, if comments were changed by other instances.
+     * @param version   Current version of comments in the shared cache.
+     */
+    private void syncListingsCache(long version) {
+        long cachedVersion = this.listingsCacheVersion.get();
+        if (cachedVersion != version && this.listingsCacheVersion.compareAndSet(cachedVersion, version)) {
+            this.listingsCache.invalidateAll();
+            this.entityCache.clear();
+            this.searchIndexOutdated = true;
+        }
+    }
+
+    /**
+     * Invalidates local caches, if comments were changed by other instances, and does nothing,
+     * if the shared cache is unavailable.
+     */
+    private void syncWithSharedCache() {
+        Long version = this.sharedCache.getVersion();
+        if (version != null) {
+            syncListingsCache(version);
+        }
+    }
+
+    /**
+     * Returns the cache of comments, which are fetched by listings, e.g. to check its hit and miss counters.
+     * @return Cache of comments by ids of their entities.
+     */
+    public CommentEntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Returns the cache of top-N listings, e.g. to check its hit and miss counters.
+     * @return Cache of listings, returned by sortByDate(int) and sortByRating(int).
+     */
+    public CommentsCache getListingsCache() {
+        return listingsCache;
+    }
+
+    /**
+     * Returns the current search index, e.g. to check which comments it contains.
+     * @return Search index or null, if it isn't built yet.
+     */
+    public CommentsSearchIndex getSearchIndex() {
+        return searchIndex;
     }
 
     /**
@@ -106,10 +283,107 @@ public class Comments {
         commentEntity.setProperty(TEXT, text);
         commentEntity.setProperty(RATING, 0);
         commentEntity.setProperty(AUTHOR_ID, authorID);
+        commentEntity.setProperty(CREATED, Date.from(this.clock.instant()));
 
         datastore.put(commentEntity);
+        Comment comment = new Comment(date, text, authorID, 0);
+        this.entityCache.put(commentEntity.getKey().getId(), comment);
+        this.listingsCache.onCommentAdded(commentEntity.getKey().getId(), comment);
+        CommentsSearchIndex index = this.searchIndex;
+        if (index != null) {
+            index.add(commentEntity.getKey().getId(), text);
+        }
+        onCommentsChanged();
     }
 
+    /**
+     * Puts comments to the datastore with batched puts of up to MAX_BATCH_PUT_SIZE entities.
+     * A failed batch is retried up to MAX_BATCH_PUT_ATTEMPTS times, and then it's skipped.
+     * @param newComments   Comments to put, their date and text mustn't be null.
+     * @return Number of comments, which were put to the datastore.
+     */
+    public int addComments(Collection<Comment> newComments) {
+        List<Entity> batch = new ArrayList<>(Math.min(newComments.size(), MAX_BATCH_PUT_SIZE));
+        int added = 0;
+        for (Comment comment : newComments) {
+            Entity commentEntity = new Entity(COMMENT_ENTITY_KIND);
+            commentEntity.setProperty(DATE, comment.date);
+            commentEntity.setProperty(TEXT, comment.text);
+            commentEntity.setProperty(RATING, comment.rating);
+            commentEntity.setProperty(AUTHOR_ID, comment.authorID);
+            commentEntity.setProperty(CREATED, Date.from(this.clock.instant()));
+            batch.add(commentEntity);
+            if (batch.size() == MAX_BATCH_PUT_SIZE) {
+                added += putBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            added += putBatch(batch);
+        }
+
+        if (added > 0) {
+            this.listingsCache.invalidateAll();
+            onCommentsChanged();
+        }
+        return added;
+    }
+
+    /**
+     * Puts entities to the datastore with one batched put, retrying it on failures.
+     * Ids are allocated before the first attempt, so a retry of the put, which timed out
+     * but was committed, overwrites the same entities instead of duplicating them.
+     * @param incompleteBatch   Entities without ids to put.
+     * @return Number of entities, which were put (all of them or 0).
+     */
+    private int putBatch(List<Entity> incompleteBatch) {
+        List<Entity> batch = null;
+        for (int attempt = 1; attempt <= MAX_BATCH_PUT_ATTEMPTS; attempt++) {
+            try {
+                if (batch == null) {
+                    batch = allocateIds(incompleteBatch);
+                }
+                this.datastore.put(batch);
+                CommentsSearchIndex index = this.searchIndex;
+                if (index != null) {
+                    for (Entity commentEntity : batch) {
+                        index.add(commentEntity.getKey().getId(), (String) commentEntity.getProperty(TEXT));
+                    }
+                }
+                return batch.size();
+            } catch (DatastoreFailureException | DatastoreTimeoutException | ConcurrentModificationException e) {
+                try {
+                    Thread.sleep(BATCH_PUT_RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Allocates ids for comments' entities.
+     * @param incompleteBatch   Entities without ids.
+     * @return Copies of entities with allocated keys in the same order.
+     */
+    private List<Entity> allocateIds(List<Entity> incompleteBatch) {
+        Iterator<Key> keys = this.datastore.allocateIds(COMMENT_ENTITY_KIND, incompleteBatch.size()).iterator();
+        List<Entity> batch = new ArrayList<>(incompleteBatch.size());
+        for (Entity incompleteEntity : incompleteBatch) {
+            Entity commentEntity = new Entity(keys.next());
+            commentEntity.setPropertiesFrom(incompleteEntity);
+            batch.add(commentEntity);
+        }
+        return batch;
+    }
+
+    /**
+     * Result of the deletion of the comment by the user.
+     */
+    public enum DeleteResult { NOT_FOUND, FORBIDDEN, DELETED }
+
     /**
      * Deletes the comment with given id from the datastore.
      * @param id    Id of the "Comment" entity
@@ -117,6 +391,58 @@ public class Comments {
     public void deleteComment(long id) {
         Key commentEntityKey = KeyFactory.createKey(COMMENT_ENTITY_KIND, id);
         this.datastore.delete(commentEntityKey);
+        onCommentDeleted(id);
+    }
+
+    /**
+     * Deletes the comment with given id, if the user is its author.
+     * The check and the deletion are made in one transaction.
+     * @param id        Id of the "Comment" entity
+     * @param userID    Id of the user, who deletes the comment.
+     * @throws java.util.ConcurrentModificationException If the comment was changed during the transaction.
+     * @return NOT_FOUND, if there's no such comment, FORBIDDEN, if the user isn't its author, and DELETED otherwise.
+     */
+    public DeleteResult deleteIfAuthor(long id, String userID) {
+        Key commentEntityKey = KeyFactory.createKey(COMMENT_ENTITY_KIND, id);
+        Transaction transaction = this.datastore.beginTransaction();
+        try {
+            Entity commentEntity = this.datastore.get(transaction, commentEntityKey);
+            if (!Objects.equals(userID, commentEntity.getProperty(AUTHOR_ID))) {
+                return DeleteResult.FORBIDDEN;
+            }
+            this.datastore.delete(transaction, commentEntityKey);
+            transaction.commit();
+        } catch (EntityNotFoundException e) {
+            return DeleteResult.NOT_FOUND;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+        onCommentDeleted(id);
+        return DeleteResult.DELETED;
+    }
+
+    /**
+     * Removes everything related to the deleted comment (votes, shards, cached data).
+     * @param id    Id of the deleted "Comment" entity
+     */
+    private void onCommentDeleted(long id) {
+        this.voteLedger.deleteVotes(id);
+        this.ratingShards.deleteShards(id);
+        this.listingsCache.onCommentDeleted(id);
+        this.entityCache.remove(id);
+        this.sharedCache.deleteAuthorID(id);
+        CommentsSearchIndex index = this.searchIndex;
+        if (index != null) {
+            index.remove(id);
+        }
+        Long deletionsVersion = this.sharedCache.incrementDeletionsVersion();
+        if (deletionsVersion != null) {
+            // the comment is already removed from the local index, so it's up to date, if nobody else deleted comments
+            this.searchIndexDeletionsVersion.compareAndSet(deletionsVersion - 1, deletionsVersion);
+        }
+        onCommentsChanged();
     }
 
     /**
@@ -145,31 +471,152 @@ public class Comments {
         for (Entity entity : commentEntities.asIterable()) {
             long id = entity.getKey().getId();
             Comment comment = Comment.getCommentFromEntity(entity);
-            result.add(new AbstractMap.SimpleEntry(id, comment));
+            result.add(new AbstractMap.SimpleEntry<>(id, comment));
         }
 
         return result;
     }
 
+    /**
+     * Modifies comments in datastore with query without loading all of them into memory.
+     * Entities are fetched from the datastore in batches while the result is iterated.
+     * @param query    Query for datastore.
+     * @return Lazy iterable of pairs (Comment id, Comment object), sorted according to the query.
+     */
+    private Iterable<Map.Entry<Long, Comment>> streamWithQuery(Query query) {
+        Iterable<Entity> commentEntities = this.datastore.prepare(query).asIterable();
+        return () -> new Iterator<Map.Entry<Long, Comment>>() {
+            private final Iterator<Entity> entities = commentEntities.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return entities.hasNext();
+            }
+
+            @Override
+            public Map.Entry<Long, Comment> next() {
+                Entity entity = entities.next();
+                return new AbstractMap.SimpleEntry<>(entity.getKey().getId(), Comment.getCommentFromEntity(entity));
+            }
+        };
+    }
+
     /**
      * Modifies comments in datastore with query and returns first 'numberOfComments'.
+     * The query is made keys-only, and comments are fetched only for returned keys.
      * @param query                   Query for datastore.
      * @param numberOfComments        Number of comments to return.
      * @return List of pairs (Comment id, Comment object), sorted according to the query.
      */
     private ArrayList<Map.Entry<Long, Comment>> modifyWithQuery(Query query, int numberOfComments) {
-        ArrayList<Map.Entry<Long, Comment>> result = new ArrayList<>();
-        List<Entity> commentEntities = this.datastore.prepare(query).asList(FetchOptions.Builder.withLimit(numberOfComments));
+        List<Entity> commentKeys =
+                this.datastore.prepare(query.setKeysOnly()).asList(FetchOptions.Builder.withLimit(numberOfComments));
+        return fetchComments(getKeys(commentKeys));
+    }
 
-        for (Entity entity : commentEntities) {
-            long id = entity.getKey().getId();
-            Comment comment = Comment.getCommentFromEntity(entity);
-            result.add(new AbstractMap.SimpleEntry(id, comment));
+    /**
+     * Gets comments with the given keys. Comments are taken from the entity cache,
+     * and only missing ones are fetched from the datastore with one batch get.
+     * @param commentKeys   Keys of comments' entities in the needed order.
+     * @return List of pairs (Comment id, Comment object) in the same order, comments deleted meanwhile are skipped.
+     */
+    private ArrayList<Map.Entry<Long, Comment>> fetchComments(List<Key> commentKeys) {
+        Map<Long, Comment> foundComments = new HashMap<>();
+        List<Key> missingKeys = new ArrayList<>();
+        for (Key key : commentKeys) {
+            Comment comment = this.entityCache.get(key.getId());
+            if (comment == null) {
+                missingKeys.add(key);
+            } else {
+                foundComments.put(key.getId(), comment);
+            }
         }
 
+        if (!missingKeys.isEmpty()) {
+            for (Entity entity : this.datastore.get(missingKeys).values()) {
+                long id = entity.getKey().getId();
+                Comment comment = Comment.getCommentFromEntity(entity);
+                this.entityCache.put(id, comment);
+                foundComments.put(id, comment);
+            }
+        }
+
+        ArrayList<Map.Entry<Long, Comment>> result = new ArrayList<>();
+        for (Key key : commentKeys) {
+            Comment comment = foundComments.get(key.getId());
+            if (comment != null) {
+                result.add(new AbstractMap.SimpleEntry<>(key.getId(), comment));
+            }
+        }
         return result;
     }
 
+    /**
+     * Returns keys of entities, returned by the keys-only query.
+     * @param keysOnly  Entities with keys only.
+     * @return List of keys in the same order.
+     */
+    private static List<Key> getKeys(List<Entity> keysOnly) {
+        List<Key> keys = new ArrayList<>(keysOnly.size());
+        for (Entity entity : keysOnly) {
+            keys.add(entity.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Modifies comments in datastore with query and returns one page of them.
+     * The query is made keys-only, and comments are fetched only for returned keys.
+     * @param query         Query for datastore.
+     * @param cursor        Token of the page, returned with the previous page, or null for the first page.
+     * @param pageSize      Number of comments on the page, must be from 1 to MAX_PAGE_SIZE.
+     * @throws IllegalArgumentException If cursor is invalid or page size is out of bounds.
+     * @return Page of pairs (Comment id, Comment object), sorted according to the query.
+     */
+    private CommentsPage modifyWithQuery(Query query, String cursor, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be from 1 to " + MAX_PAGE_SIZE);
+        }
+        // comments of the page are taken from the entity cache, which must not keep ratings changed by others
+        syncWithSharedCache();
+        FetchOptions fetchOptions = FetchOptions.Builder.withLimit(pageSize);
+        if (cursor != null) {
+            fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+        }
+
+        QueryResultList<Entity> commentKeys = this.datastore.prepare(query.setKeysOnly()).asQueryResultList(fetchOptions);
+        ArrayList<Map.Entry<Long, Comment>> result = fetchComments(getKeys(commentKeys));
+
+        // a page, which isn't full, is the last one
+        String nextCursor = commentKeys.size() < pageSize ? null : commentKeys.getCursor().toWebSafeString();
+        return new CommentsPage(result, nextCursor);
+    }
+
+    /**
+     * Returns first 'numberOfComments' comments from the local cache, then from the shared cache,
+     * and only then from the datastore. Loaded listings are put to both caches.
+     * @param type                    Sort order ('date' or 'rating').
+     * @param numberOfComments        Number of comments to return.
+     * @param query                   Query for datastore with the same sort order.
+     * @return List of pairs (Comment id, Comment object), sorted according to the query.
+     */
+    private ArrayList<Map.Entry<Long, Comment>> readListing(String type, int numberOfComments, Query query) {
+        Long version = this.sharedCache.getVersion();
+        if (version == null) {
+            return this.listingsCache.get(type, numberOfComments, () -> modifyWithQuery(query, numberOfComments));
+        }
+
+        syncListingsCache(version);
+        return this.listingsCache.get(type, numberOfComments, () -> {
+            ArrayList<Map.Entry<Long, Comment>> listing = this.sharedCache.getListing(type, numberOfComments, version);
+            if (listing == null) {
+                listing = modifyWithQuery(query, numberOfComments);
+                this.sharedCache.putListing(type, numberOfComments, version, listing);
+            }
+            return listing;
+        });
+    }
+
     /**
      * Sorts comments from datastore by the date in descending order.
      * @return List of pairs (Comment id, Comment object), sorted by the date in descending order.
@@ -181,12 +628,22 @@ public class Comments {
 
     /**
      * Sorts comments from datastore by the date in descending order and return first 'numberOfComments'.
+     * The result is served from the local or the shared cache, if it's there.
      * @param numberOfComments        Number of comments to return.
      * @return List of pairs (Comment id, Comment object), sorted by the date in descending order.
      */
     public ArrayList<Map.Entry<Long, Comment>> sortByDate(int numberOfComments) {
         Query query = new Query(COMMENT_ENTITY_KIND).addSort(DATE, Query.SortDirection.DESCENDING);
-        return modifyWithQuery(query, numberOfComments);
+        return readListing(DATE, numberOfComments, query);
+    }
+
+    /**
+     * Sorts comments from datastore by the date in descending order without loading all of them into memory.
+     * @return Lazy iterable of pairs (Comment id, Comment object), sorted by the date in descending order.
+     */
+    public Iterable<Map.Entry<Long, Comment>> streamByDate() {
+        Query query = new Query(COMMENT_ENTITY_KIND).addSort(DATE, Query.SortDirection.DESCENDING);
+        return streamWithQuery(query);
     }
 
     /**
@@ -198,14 +655,127 @@ public class Comments {
         return modifyWithQuery(query);
     }
 
+    /**
+     * Sorts comments from datastore by the rating in descending order without loading all of them into memory.
+     * @return Lazy iterable of pairs (Comment id, Comment object), sorted by the rating in descending order.
+     */
+    public Iterable<Map.Entry<Long, Comment>> streamByRating() {
+        Query query = new Query(COMMENT_ENTITY_KIND).addSort(RATING, Query.SortDirection.DESCENDING);
+        return streamWithQuery(query);
+    }
+
     /**
      * Sorts comments from datastore by the rating in descending order and return first 'n'.
+     * The result is served from the local or the shared cache, if it's there.
      * @param numberOfComments        Number of comments to return.
      * @return List of pairs (Comment id, Comment object), sorted by the rating in descending order.
      */
     public ArrayList<Map.Entry<Long, Comment>> sortByRating(int numberOfComments) {
         Query query = new Query(COMMENT_ENTITY_KIND).addSort(RATING, Query.SortDirection.DESCENDING);
-        return modifyWithQuery(query, numberOfComments);
+        return readListing(RATING, numberOfComments, query);
+    }
+
+    /**
+     * Sorts comments from datastore by the date in descending order and returns one page of them.
+     * @param cursor        Token of the page, returned with the previous page, or null for the first page.
+     * @param pageSize      Number of comments on the page, must be from 1 to MAX_PAGE_SIZE.
+     * @throws IllegalArgumentException If cursor is invalid or page size is out of bounds.
+     * @return Page of pairs (Comment id, Comment object), sorted by the date in descending order.
+     */
+    public CommentsPage sortByDate(String cursor, int pageSize) {
+        Query query = new Query(COMMENT_ENTITY_KIND).addSort(DATE, Query.SortDirection.DESCENDING);
+        return modifyWithQuery(query, cursor, pageSize);
+    }
+
+    /**
+     * Sorts comments from datastore by the rating in descending order and returns one page of them.
+     * @param cursor        Token of the page, returned with the previous page, or null for the first page.
+     * @param pageSize      Number of comments on the page, must be from 1 to MAX_PAGE_SIZE.
+     * @throws IllegalArgumentException If cursor is invalid or page size is out of bounds.
+     * @return Page of pairs (Comment id, Comment object), sorted by the rating in descending order.
+     */
+    public CommentsPage sortByRating(String cursor, int pageSize) {
+        Query query = new Query(COMMENT_ENTITY_KIND).addSort(RATING, Query.SortDirection.DESCENDING);
+        return modifyWithQuery(query, cursor, pageSize);
+    }
+
+    /**
+     * Finds comments, which text contains words from the query, the most relevant first.
+     * The search index is built by rebuildSearchIndex() during the warmup, and it's built here only if
+     * the warmup didn't run. If other instances changed comments, comments created since the last catch-up
+     * are added to the index not more often than SEARCH_INDEX_REFRESH_INTERVAL_MILLIS. If other instances
+     * deleted comments (the version of deletions in the shared cache changed), the index is rebuilt not more often
+     * than SEARCH_INDEX_REBUILD_INTERVAL_MILLIS. Deleted comments, which are still in the index, aren't returned.
+     * @param query     Text of the query.
+     * @param limit     Maximal number of comments to return.
+     * @return List of pairs (Comment id, Comment object), sorted by relevance.
+     */
+    public ArrayList<Map.Entry<Long, Comment>> search(String query, int limit) {
+        syncWithSharedCache();
+        CommentsSearchIndex index = this.searchIndex;
+        Long deletionsVersion = this.sharedCache.getDeletionsVersion();
+        if (index == null) {
+            index = getOrBuildSearchIndex();
+        } else if (deletionsVersion != null && deletionsVersion != this.searchIndexDeletionsVersion.get()
+                && this.searchIndexRebuildSchedule.tryStart()) {
+            index = rebuildSearchIndex();
+        } else if (this.searchIndexOutdated && this.searchIndexRefreshSchedule.tryStart()) {
+            refreshSearchIndex(index);
+        }
+
+        List<Key> keys = new ArrayList<>();
+        for (long id : index.search(query, limit)) {
+            keys.add(KeyFactory.createKey(COMMENT_ENTITY_KIND, id));
+        }
+        return fetchComments(keys);
+    }
+
+    private synchronized CommentsSearchIndex getOrBuildSearchIndex() {
+        CommentsSearchIndex index = this.searchIndex;
+        return index != null ? index : rebuildSearchIndex();
+    }
+
+    /**
+     * Builds the search index from all comments in the datastore and replaces the current one.
+     * It's called by the warmup and by searches after deletions by other instances. The current index is served,
+     * while the new one is built, and comments, which were created meanwhile, are added to the new index after the build.
+     * @return The new search index.
+     */
+    public synchronized CommentsSearchIndex rebuildSearchIndex() {
+        long startTime = this.clock.millis();
+        this.searchIndexOutdated = false;
+        Long deletionsVersion = this.sharedCache.getDeletionsVersion();
+        CommentsSearchIndex index = new CommentsSearchIndex();
+        Query query = new Query(COMMENT_ENTITY_KIND);
+        for (Entity entity : this.datastore.prepare(query).asIterable(FetchOptions.Builder.withChunkSize(MAX_BATCH_PUT_SIZE))) {
+            index.add(entity.getKey().getId(), (String) entity.getProperty(TEXT));
+        }
+        this.searchIndexWatermark = startTime;
+        refreshSearchIndex(index);
+        this.searchIndex = index;
+        if (deletionsVersion != null) {
+            this.searchIndexDeletionsVersion.set(deletionsVersion);
+        }
+        return index;
+    }
+
+    /**
+     * Adds comments, which were created after the watermark, to the search index.
+     * The query is bounded by the number of new comments, so it's cheap enough for the request of the user.
+     * @param index     The search index.
+     */
+    private void refreshSearchIndex(CommentsSearchIndex index) {
+        this.searchIndexOutdated = false;
+        long startTime = this.clock.millis();
+        Query query = new Query(COMMENT_ENTITY_KIND).setFilter(new Query.FilterPredicate(CREATED,
+                Query.FilterOperator.GREATER_THAN_OR_EQUAL,
+                new Date(this.searchIndexWatermark - SEARCH_INDEX_REFRESH_MARGIN_MILLIS)));
+        for (Entity entity : this.datastore.prepare(query).asIterable(FetchOptions.Builder.withChunkSize(MAX_BATCH_PUT_SIZE))) {
+            if (!index.contains(entity.getKey().getId())) {
+                index.add(entity.getKey().getId(), (String) entity.getProperty(TEXT));
+            }
+        }
+        this.searchIndexWatermark = Math.max(this.searchIndexWatermark, startTime);
     }
 
     /**
@@ -220,29 +790,101 @@ public class Comments {
     }
 
     /**
-     * Upvotes comment with the specified id of its' entity.
-     * @param id    Comments' entity id
+     * Upvotes comment with the specified id of its' entity, if the user hasn't voted for it yet.
+     * The vote is written to a shard of the rating, the 'rating' property is recalculated later.
+     * @param userID    Id of the voting user.
+     * @param id        Comments' entity id
+     * @throws ConcurrentModificationException If the vote conflicted with concurrent votes.
+     * @return NOT_FOUND, if there's no such comment, DUPLICATE, if the user has already voted for it,
+     *         and RECORDED otherwise.
      */
-    public void upvoteComment(long id) {
+    public VoteLedger.VoteResult upvoteComment(String userID, long id) {
+        VoteLedger.VoteResult result = this.voteLedger.tryRecord(userID, id, 1);
+        materializeRatingsIfDue();
+        return result;
+    }
+
+    /**
+     * Downvotes comment with the specified id of its' entity, if the user hasn't voted for it yet.
+     * The vote is written to a shard of the rating, the 'rating' property is recalculated later.
+     * @param userID    Id of the voting user.
+     * @param id        Comments' entity id
+     * @throws ConcurrentModificationException If the vote conflicted with concurrent votes.
+     * @return NOT_FOUND, if there's no such comment, DUPLICATE, if the user has already voted for it,
+     *         and RECORDED otherwise.
+     */
+    public VoteLedger.VoteResult downvoteComment(String userID, long id) {
+        VoteLedger.VoteResult result = this.voteLedger.tryRecord(userID, id, -1);
+        materializeRatingsIfDue();
+        return result;
+    }
+
+    /**
+     * Recalculates ratings, if more than RATINGS_MATERIALIZATION_INTERVAL_MILLIS passed since the last recalculation.
+     * Only one of concurrent callers makes it, others return immediately.
+     * It's called by votes and reads, and the cron job calls materializeRatings() directly,
+     * so ratings are recalculated even if nobody uses the instance, which received votes.
+     */
+    public void materializeRatingsIfDue() {
+        if (this.ratingsMaterializationSchedule.tryStart()) {
+            materializeRatings();
+        }
+    }
+
+    /**
+     * Recalculates the 'rating' property of comments, which have dirty shards,
+     * so that sorting by rating stays an index-backed query. Dirty shards are stored in the datastore,
+     * so any instance recalculates ratings of votes, which were received by other instances.
+     * A comment, which recalculation failed, keeps its dirty shards and is recalculated next time.
+     * Shards of comments, which don't exist anymore, are deleted.
+     */
+    public void materializeRatings() {
+        Set<Long> ids;
         try {
-            Entity commentEntity = getCommentEntity(id);
-            long rating = (long) commentEntity.getProperty(RATING);
-            commentEntity.setProperty(RATING, rating + 1);
-            this.datastore.put(commentEntity);
-        } catch (EntityNotFoundException ignored) {}
+            ids = this.ratingShards.getDirtyCommentIDs(MAX_MATERIALIZED_SHARDS);
+        } catch (DatastoreFailureException | DatastoreTimeoutException e) {
+            return;
+        }
+        for (long id : ids) {
+            try {
+                materializeRating(id);
+            } catch (DatastoreFailureException | DatastoreTimeoutException | ConcurrentModificationException ignored) {
+                // shards stay dirty, so the rating is recalculated by the next materialization
+            }
+        }
     }
 
     /**
-     * Downvotes comment with the specified id of its' entity.
+     * Sets the 'rating' property of the comment to the sum of its shards and its rating offset
+     * and marks the shards as clean. Shards are read in the same cross-group transaction (the comment
+     * and its shards are at most 21 entity groups), so a rating, which was materialized by another instance
+     * with newer shards, is never overwritten with an older sum, and a concurrent vote makes it fail.
      * @param id    Comments' entity id
      */
-    public void downvoteComment(long id) {
+    private void materializeRating(long id) {
+        Transaction transaction = this.datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
         try {
-            Entity commentEntity = getCommentEntity(id);
-            long rating = (long) commentEntity.getProperty(RATING);
-            commentEntity.setProperty(RATING, rating - 1);
-            this.datastore.put(commentEntity);
-        } catch (EntityNotFoundException ignored) {}
+            Entity commentEntity = this.datastore.get(transaction, KeyFactory.createKey(COMMENT_ENTITY_KIND, id));
+            long shardsTotal = this.ratingShards.collectTotal(transaction, id);
+            if (!commentEntity.hasProperty(RATING_OFFSET)) {
+                // the rating was never materialized, so it consists only of votes made without shards
+                commentEntity.setProperty(RATING_OFFSET, commentEntity.getProperty(RATING));
+            }
+            long offset = (long) commentEntity.getProperty(RATING_OFFSET);
+            commentEntity.setProperty(RATING, offset + shardsTotal);
+            this.datastore.put(transaction, commentEntity);
+            transaction.commit();
+            this.listingsCache.onRatingChanged(id, offset + shardsTotal);
+            this.entityCache.updateRating(id, offset + shardsTotal);
+            onCommentsChanged();
+        } catch (EntityNotFoundException e) {
+            this.voteLedger.deleteVotes(id);
+            this.ratingShards.deleteShards(id);
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
     }
 
     /**
@@ -252,9 +894,17 @@ public class Comments {
      * @return      Author's id or null
      */
     public String getCommentAuthorID(long id) {
+        String cachedAuthorID = this.sharedCache.getAuthorID(id);
+        if (cachedAuthorID != null) {
+            return cachedAuthorID;
+        }
         try {
             Entity commentEntity = getCommentEntity(id);
-            return (String) commentEntity.getProperty(AUTHOR_ID);
+            String authorID = (String) commentEntity.getProperty(AUTHOR_ID);
+            if (authorID != null) {
+                this.sharedCache.putAuthorID(id, authorID);
+            }
+            return authorID;
         } catch (EntityNotFoundException ignored) {
             return null;
         }
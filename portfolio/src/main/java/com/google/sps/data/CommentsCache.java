@@ -0,0 +1,206 @@
+package com.google.sps.data;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the first N comments for each sort order ('date' or 'rating') and N.
+ * The cache has the bounded number of listings, which are evicted in LRU order,
+ * and each listing expires after the specified time. Changes of comments update
+ * cached listings, when it's possible, and invalidate only affected listings otherwise.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class CommentsCache {
+    /**
+     * Represents the key of the cached listing.
+     */
+    private static class ListingKey {
+        private final String type;
+        private final int quantity;
+
+        ListingKey(String type, int quantity) {
+            this.type = type;
+            this.quantity = quantity;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            ListingKey otherKey = (ListingKey) obj;
+            return this.type.equals(otherKey.type) && this.quantity == otherKey.quantity;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + quantity;
+        }
+    }
+
+    /**
+     * Represents the cached listing and the time, when it expires.
+     */
+    private static class Listing {
+        private final List<Map.Entry<Long, Comments.Comment>> comments;
+        private final long expirationTime;
+
+        Listing(List<Map.Entry<Long, Comments.Comment>> comments, long expirationTime) {
+            this.comments = Collections.unmodifiableList(comments);
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private final Clock clock;
+    private final long ttlMillis;
+    private final LinkedHashMap<ListingKey, Listing> listings;
+    /** Incremented on every change, so that listings loaded concurrently with a change aren't cached. */
+    private long generation = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Creates the cache.
+     * @param clock         Clock, which is used to expire listings.
+     * @param maxListings   Maximal number of cached listings.
+     * @param ttlMillis     Time in milliseconds, after which a listing expires.
+     */
+    public CommentsCache(Clock clock, int maxListings, long ttlMillis) {
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.listings = new LinkedHashMap<ListingKey, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ListingKey, Listing> eldest) {
+                return size() > maxListings;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached listing or loads it with the loader and caches it.
+     * @param type      Sort order ('date' or 'rating').
+     * @param quantity  Number of comments in the listing.
+     * @param loader    Loads the listing from the datastore.
+     * @return List of pairs (Comment id, Comment object), sorted according to the type.
+     */
+    public ArrayList<Map.Entry<Long, Comments.Comment>> get(
+            String type, int quantity, Supplier<ArrayList<Map.Entry<Long, Comments.Comment>>> loader) {
+        ListingKey key = new ListingKey(type, quantity);
+        long loadGeneration;
+        synchronized (this) {
+            Listing listing = listings.get(key);
+            if (listing != null && listing.expirationTime > clock.millis()) {
+                hits.incrementAndGet();
+                return new ArrayList<>(listing.comments);
+            }
+            misses.incrementAndGet();
+            loadGeneration = generation;
+        }
+
+        ArrayList<Map.Entry<Long, Comments.Comment>> comments = loader.get();
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                listings.put(key, new Listing(new ArrayList<>(comments), clock.millis() + ttlMillis));
+            }
+        }
+        return comments;
+    }
+
+    /**
+     * Adds the new comment to the beginning of cached listings sorted by date,
+     * and invalidates listings sorted by rating.
+     * @param id        Comments' entity id
+     * @param comment   The new comment.
+     */
+    public synchronized void onCommentAdded(long id, Comments.Comment comment) {
+        generation++;
+        Iterator<Map.Entry<ListingKey, Listing>> iterator = listings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ListingKey, Listing> entry = iterator.next();
+            if (!Comments.DATE.equals(entry.getKey().type)) {
+                iterator.remove();
+                continue;
+            }
+            List<Map.Entry<Long, Comments.Comment>> comments = new ArrayList<>(entry.getKey().quantity);
+            comments.add(new AbstractMap.SimpleEntry<>(id, comment));
+            comments.addAll(entry.getValue().comments);
+            if (comments.size() > entry.getKey().quantity) {
+                comments.remove(comments.size() - 1);
+            }
+            entry.setValue(new Listing(comments, entry.getValue().expirationTime));
+        }
+    }
+
+    /**
+     * Removes the deleted comment from cached listings. Full listings, which contained it,
+     * are invalidated, because the next comment after them isn't known.
+     * @param id        Comments' entity id
+     */
+    public synchronized void onCommentDeleted(long id) {
+        generation++;
+        Iterator<Map.Entry<ListingKey, Listing>> iterator = listings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ListingKey, Listing> entry = iterator.next();
+            List<Map.Entry<Long, Comments.Comment>> comments = new ArrayList<>(entry.getValue().comments);
+            if (!comments.removeIf(comment -> comment.getKey() == id)) {
+                continue;
+            }
+            if (entry.getValue().comments.size() == entry.getKey().quantity) {
+                iterator.remove();
+            } else {
+                entry.setValue(new Listing(comments, entry.getValue().expirationTime));
+            }
+        }
+    }
+
+    /**
+     * Updates the rating of the comment in cached listings sorted by date,
+     * and invalidates listings sorted by rating, because their order can change.
+     * @param id        Comments' entity id
+     * @param rating    The new rating of the comment.
+     */
+    public synchronized void onRatingChanged(long id, long rating) {
+        generation++;
+        Iterator<Map.Entry<ListingKey, Listing>> iterator = listings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ListingKey, Listing> entry = iterator.next();
+            if (!Comments.DATE.equals(entry.getKey().type)) {
+                iterator.remove();
+                continue;
+            }
+            List<Map.Entry<Long, Comments.Comment>> comments = new ArrayList<>(entry.getValue().comments);
+            comments.replaceAll(comment -> comment.getKey() == id
+                    ? new AbstractMap.SimpleEntry<>(id, comment.getValue().withRating(rating))
+                    : comment);
+            entry.setValue(new Listing(comments, entry.getValue().expirationTime));
+        }
+    }
+
+    /**
+     * Removes all cached listings.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        listings.clear();
+    }
+
+    /**
+     * Returns the number of requests, which were served from the cache.
+     * @return Number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests, which were loaded from the datastore.
+     * @return Number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
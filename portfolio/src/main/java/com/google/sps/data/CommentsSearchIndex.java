@@ -0,0 +1,283 @@
+package com.google.sps.data;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over texts of comments, which supports queries ranked with BM25.
+ * Postings of every term are kept in primitive arrays (ids of comments and term frequencies),
+ * and terms of every comment are remembered, so that removal touches only its own terms.
+ * Removed comments are left in postings as tombstones, which are skipped by searches
+ * and are dropped by the compaction, when there are many of them.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class CommentsSearchIndex {
+    /** BM25 parameter, which limits the influence of the term frequency. */
+    private static final double K1 = 1.2;
+    /** BM25 parameter, which controls the normalization by the length of the comment. */
+    private static final double B = 0.75;
+    /** Minimal number of tombstones, after which postings are compacted. */
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 1024;
+
+    /**
+     * Represents the list of comments, which contain the term, with term frequencies.
+     * It can contain tombstones of removed comments, which aren't counted in 'live'.
+     */
+    private static class Postings {
+        private long[] ids = new long[4];
+        private int[] frequencies = new int[4];
+        private int size = 0;
+        private int live = 0;
+
+        void add(long id, int frequency) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            ids[size] = id;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        /**
+         * Drops postings of removed comments.
+         * @param tombstones    Ids of removed comments.
+         */
+        void compact(Map<Long, IndexedComment> tombstones) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!tombstones.containsKey(ids[i])) {
+                    ids[kept] = ids[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            live = kept;
+        }
+    }
+
+    /**
+     * Represents the indexed comment: its terms and its length in tokens.
+     */
+    private static class IndexedComment {
+        private final String[] terms;
+        private final int length;
+
+        IndexedComment(String[] terms, int length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+
+    private final HashMap<String, Postings> postings = new HashMap<>();
+    private final HashMap<Long, IndexedComment> comments = new HashMap<>();
+    /** Removed comments, which are still in postings of their terms. */
+    private final HashMap<Long, IndexedComment> tombstones = new HashMap<>();
+    private long totalLength = 0;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Splits the text into lowercase tokens, which consist of letters and digits.
+     * @param text  The text.
+     * @return List of tokens in the order of appearance.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isTokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isTokenChar && start < 0) {
+                start = i;
+            } else if (!isTokenChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Adds the comment to the index. If it's already indexed, it's replaced.
+     * @param id    Comments' entity id
+     * @param text  The comment's text.
+     */
+    public void add(long id, String text) {
+        List<String> tokens = tokenize(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+            IndexedComment tombstone = tombstones.get(id);
+            if (tombstone != null) {
+                // old postings of the same id mustn't be counted as the new comment's ones
+                for (String term : tombstone.terms) {
+                    compactTerm(term);
+                }
+                tombstones.remove(id);
+            }
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(id, entry.getValue());
+            }
+            comments.put(id, new IndexedComment(frequencies.keySet().toArray(new String[0]), tokens.size()));
+            totalLength += tokens.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the comment from the index.
+     * @param id    Comments' entity id
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeUnlocked(long id) {
+        IndexedComment indexed = comments.remove(id);
+        if (indexed == null) {
+            return;
+        }
+        for (String term : indexed.terms) {
+            postings.get(term).live--;
+        }
+        tombstones.put(id, indexed);
+        totalLength -= indexed.length;
+        if (tombstones.size() >= Math.max(MIN_TOMBSTONES_TO_COMPACT, comments.size())) {
+            compactUnlocked();
+        }
+    }
+
+    private void compactTerm(String term) {
+        Postings termPostings = postings.get(term);
+        if (termPostings == null) {
+            return;
+        }
+        termPostings.compact(tombstones);
+        if (termPostings.size == 0) {
+            postings.remove(term);
+        }
+    }
+
+    private void compactUnlocked() {
+        Set<String> terms = new HashSet<>();
+        for (IndexedComment tombstone : tombstones.values()) {
+            terms.addAll(Arrays.asList(tombstone.terms));
+        }
+        for (String term : terms) {
+            compactTerm(term);
+        }
+        tombstones.clear();
+    }
+
+    /**
+     * Drops tombstones of removed comments from postings. It's made automatically,
+     * when the number of tombstones reaches the number of indexed comments, so removals cost O(1) amortized.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            compactUnlocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the comment is indexed.
+     * @param id    Comments' entity id
+     * @return true, if the comment is indexed, and false if not
+     */
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return comments.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds comments, which contain at least one term of the query, ranked by BM25.
+     * @param query     Text of the query.
+     * @param limit     Maximal number of results.
+     * @return Ids of found comments, the most relevant first.
+     */
+    public List<Long> search(String query, int limit) {
+        Set<String> terms = new HashSet<>(tokenize(query));
+        Map<Long, Double> scores = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            int numberOfComments = comments.size();
+            double averageLength = numberOfComments == 0 ? 0 : (double) totalLength / numberOfComments;
+            for (String term : terms) {
+                Postings termPostings = postings.get(term);
+                if (termPostings == null || termPostings.live == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (numberOfComments - termPostings.live + 0.5) / (termPostings.live + 0.5));
+                for (int i = 0; i < termPostings.size; i++) {
+                    long id = termPostings.ids[i];
+                    IndexedComment indexed = comments.get(id);
+                    if (indexed == null) {
+                        // the tombstone of the removed comment
+                        continue;
+                    }
+                    int frequency = termPostings.frequencies[i];
+                    double lengthNorm = 1 - B + B * indexed.length / averageLength;
+                    double score = idf * frequency * (K1 + 1) / (frequency + K1 * lengthNorm);
+                    scores.merge(id, score, Double::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // keeps 'limit' best results in the min-heap, so the worst of them is on the top
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(
+                Math.max(1, limit), Map.Entry.comparingByValue());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (best.size() < limit) {
+                best.add(entry);
+            } else if (limit > 0 && best.peek().getValue() < entry.getValue()) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+
+        LinkedList<Long> result = new LinkedList<>();
+        while (!best.isEmpty()) {
+            result.addFirst(best.poll().getKey());
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Returns the number of indexed comments.
+     * @return Number of comments.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return comments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
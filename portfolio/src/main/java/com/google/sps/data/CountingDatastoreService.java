@@ -0,0 +1,163 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Datastore, which counts calls of the current request (see RequestMetrics) and delegates them to another datastore.
+ * A query is counted once, when it's prepared, and methods, which don't call the datastore, aren't counted.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class CountingDatastoreService implements DatastoreService {
+    private final DatastoreService datastore;
+
+    /** Creates the counting datastore.
+     * @param datastore     Datastore, which makes calls.
+     */
+    public CountingDatastoreService(DatastoreService datastore) {
+        this.datastore = datastore;
+    }
+
+    @Override
+    public Entity get(Key key) throws EntityNotFoundException {
+        RequestMetrics.onDatastoreCall();
+        return datastore.get(key);
+    }
+
+    @Override
+    public Entity get(Transaction transaction, Key key) throws EntityNotFoundException {
+        RequestMetrics.onDatastoreCall();
+        return datastore.get(transaction, key);
+    }
+
+    @Override
+    public Map<Key, Entity> get(Iterable<Key> keys) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.get(keys);
+    }
+
+    @Override
+    public Map<Key, Entity> get(Transaction transaction, Iterable<Key> keys) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.get(transaction, keys);
+    }
+
+    @Override
+    public Key put(Entity entity) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.put(entity);
+    }
+
+    @Override
+    public Key put(Transaction transaction, Entity entity) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.put(transaction, entity);
+    }
+
+    @Override
+    public List<Key> put(Iterable<Entity> entities) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.put(entities);
+    }
+
+    @Override
+    public List<Key> put(Transaction transaction, Iterable<Entity> entities) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.put(transaction, entities);
+    }
+
+    @Override
+    public void delete(Key... keys) {
+        RequestMetrics.onDatastoreCall();
+        datastore.delete(keys);
+    }
+
+    @Override
+    public void delete(Transaction transaction, Key... keys) {
+        RequestMetrics.onDatastoreCall();
+        datastore.delete(transaction, keys);
+    }
+
+    @Override
+    public void delete(Iterable<Key> keys) {
+        RequestMetrics.onDatastoreCall();
+        datastore.delete(keys);
+    }
+
+    @Override
+    public void delete(Transaction transaction, Iterable<Key> keys) {
+        RequestMetrics.onDatastoreCall();
+        datastore.delete(transaction, keys);
+    }
+
+    @Override
+    public Transaction beginTransaction() {
+        RequestMetrics.onDatastoreCall();
+        return datastore.beginTransaction();
+    }
+
+    @Override
+    public Transaction beginTransaction(TransactionOptions options) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.beginTransaction(options);
+    }
+
+    @Override
+    public KeyRange allocateIds(String kind, long num) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.allocateIds(kind, num);
+    }
+
+    @Override
+    public KeyRange allocateIds(Key parent, String kind, long num) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.allocateIds(parent, kind, num);
+    }
+
+    @Override
+    public KeyRangeState allocateIdRange(KeyRange range) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.allocateIdRange(range);
+    }
+
+    @Override
+    public DatastoreAttributes getDatastoreAttributes() {
+        return datastore.getDatastoreAttributes();
+    }
+
+    @Override
+    public Map<Index, Index.IndexState> getIndexes() {
+        RequestMetrics.onDatastoreCall();
+        return datastore.getIndexes();
+    }
+
+    @Override
+    public PreparedQuery prepare(Query query) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.prepare(query);
+    }
+
+    @Override
+    public PreparedQuery prepare(Transaction transaction, Query query) {
+        RequestMetrics.onDatastoreCall();
+        return datastore.prepare(transaction, query);
+    }
+
+    @Override
+    public Transaction getCurrentTransaction() {
+        return datastore.getCurrentTransaction();
+    }
+
+    @Override
+    public Transaction getCurrentTransaction(Transaction returnedIfNoTxn) {
+        return datastore.getCurrentTransaction(returnedIfNoTxn);
+    }
+
+    @Override
+    public Collection<Transaction> getActiveTransactions() {
+        return datastore.getActiveTransactions();
+    }
+}
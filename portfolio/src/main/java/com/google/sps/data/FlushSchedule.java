@@ -0,0 +1,37 @@
+package com.google.sps.data;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a periodic job (like writing accumulated data to the datastore) must run.
+ * The job is started by one of request threads, because App Engine doesn't allow
+ * background threads, which live longer than a request.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class FlushSchedule {
+    private final AtomicLong lastRunTime;
+    private final long intervalMillis;
+    private final Clock clock;
+
+    /** Creates the schedule.
+     * @param clock             Clock, which is used to measure the interval.
+     * @param intervalMillis    Minimal time between two runs in milliseconds.
+     */
+    public FlushSchedule(Clock clock, long intervalMillis) {
+        this.clock = clock;
+        this.intervalMillis = intervalMillis;
+        this.lastRunTime = new AtomicLong(clock.millis());
+    }
+
+    /**
+     * Checks if the interval has passed since the last run and, if so,
+     * reserves the run for the calling thread. Only one thread wins the reservation.
+     * @return true, if the caller must run the job, and false if not
+     */
+    public boolean tryStart() {
+        long now = clock.millis();
+        long last = lastRunTime.get();
+        return now - last >= intervalMillis && lastRunTime.compareAndSet(last, now);
+    }
+}
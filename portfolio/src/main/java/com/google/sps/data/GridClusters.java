@@ -0,0 +1,239 @@
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clusters of map points, which are precomputed for every zoom level, so the map receives
+ * about the same number of markers at every zoom. Points are grouped by the grid of Web Mercator cells,
+ * which are a quarter of a 256-pixel tile wide. Every cell is split into 4 cells on the next zoom level,
+ * so clusters of each level are computed by merging clusters of the next one.
+ * Clusters of a level are kept in primitive arrays sorted by column and row of their cells.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class GridClusters {
+    public static final int MAX_ZOOM = 20;
+    /** There are 2^CELLS_PER_TILE_BITS cells along each side of a tile. */
+    private static final int CELLS_PER_TILE_BITS = 2;
+    /** Latitude of the top and the bottom edges of Web Mercator maps. */
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    /**
+     * Represents the cluster: the centroid of its points and their number.
+     */
+    public static final class Cluster {
+        private final double latitude;
+        private final double longitude;
+        private final int count;
+        private final int point;
+
+        Cluster(double latitude, double longitude, int count, int point) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+            this.point = point;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /** Returns the index of one of the cluster's points, which is the only one, if the count is 1. */
+        public int getPoint() {
+            return point;
+        }
+    }
+
+    /**
+     * Represents clusters of one zoom level, sorted by columns and then by rows.
+     */
+    private static class Level {
+        private final int[] columns;
+        private final int[] rows;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final int[] counts;
+        private final int[] points;
+
+        Level(int size) {
+            columns = new int[size];
+            rows = new int[size];
+            latitudes = new double[size];
+            longitudes = new double[size];
+            counts = new int[size];
+            points = new int[size];
+        }
+    }
+
+    private final Level[] levels = new Level[MAX_ZOOM + 1];
+
+    /** Clusters points on every zoom level.
+     * @param latitudes     Latitudes of points.
+     * @param longitudes    Longitudes of points.
+     */
+    public GridClusters(double[] latitudes, double[] longitudes) {
+        int cells = getCells(MAX_ZOOM);
+        Level points = new Level(latitudes.length);
+        for (int i = 0; i < latitudes.length; i++) {
+            points.columns[i] = getColumn(longitudes[i], cells);
+            points.rows[i] = getRow(latitudes[i], cells);
+            points.latitudes[i] = latitudes[i];
+            points.longitudes[i] = longitudes[i];
+            points.counts[i] = 1;
+            points.points[i] = i;
+        }
+        levels[MAX_ZOOM] = merge(points);
+        for (int zoom = MAX_ZOOM - 1; zoom >= 0; zoom--) {
+            Level children = levels[zoom + 1];
+            Level parents = new Level(children.columns.length);
+            for (int i = 0; i < children.columns.length; i++) {
+                parents.columns[i] = children.columns[i] >> 1;
+                parents.rows[i] = children.rows[i] >> 1;
+                parents.latitudes[i] = children.latitudes[i];
+                parents.longitudes[i] = children.longitudes[i];
+                parents.counts[i] = children.counts[i];
+                parents.points[i] = children.points[i];
+            }
+            levels[zoom] = merge(parents);
+        }
+    }
+
+    /**
+     * Merges clusters in the same cells, their centroids are weighted by counts.
+     */
+    private static Level merge(Level clusters) {
+        Integer[] order = new Integer[clusters.columns.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> clusters.columns[first] != clusters.columns[second]
+                ? Integer.compare(clusters.columns[first], clusters.columns[second])
+                : Integer.compare(clusters.rows[first], clusters.rows[second]));
+
+        int size = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || !isSameCell(clusters, order[i - 1], order[i])) {
+                size++;
+            }
+        }
+        Level merged = new Level(size);
+        int cluster = -1;
+        for (int i = 0; i < order.length; i++) {
+            int j = order[i];
+            if (i == 0 || !isSameCell(clusters, order[i - 1], j)) {
+                cluster++;
+                merged.columns[cluster] = clusters.columns[j];
+                merged.rows[cluster] = clusters.rows[j];
+                merged.points[cluster] = clusters.points[j];
+            }
+            // sums are divided by counts below
+            merged.latitudes[cluster] += clusters.latitudes[j] * clusters.counts[j];
+            merged.longitudes[cluster] += clusters.longitudes[j] * clusters.counts[j];
+            merged.counts[cluster] += clusters.counts[j];
+        }
+        for (int i = 0; i < size; i++) {
+            merged.latitudes[i] /= merged.counts[i];
+            merged.longitudes[i] /= merged.counts[i];
+        }
+        return merged;
+    }
+
+    private static boolean isSameCell(Level clusters, int first, int second) {
+        return clusters.columns[first] == clusters.columns[second] && clusters.rows[first] == clusters.rows[second];
+    }
+
+    private static int getCells(int zoom) {
+        return 1 << (zoom + CELLS_PER_TILE_BITS);
+    }
+
+    private static int getColumn(double longitude, int cells) {
+        double x = (longitude + 180) / 360;
+        return Math.max(0, Math.min(cells - 1, (int) Math.floor(x * cells)));
+    }
+
+    private static int getRow(double latitude, int cells) {
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        double y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+        return Math.max(0, Math.min(cells - 1, (int) Math.floor(y * cells)));
+    }
+
+    /**
+     * Returns all clusters of the zoom level.
+     * @param zoom  Zoom level of the map, it's limited by 0 and MAX_ZOOM.
+     * @return Clusters sorted by their cells.
+     */
+    public List<Cluster> getClusters(int zoom) {
+        return getClusters(zoom, -MAX_LATITUDE, -180, MAX_LATITUDE, 180);
+    }
+
+    /**
+     * Returns clusters of the zoom level, which cells intersect the bounding box.
+     * If 'west' is greater than 'east', the box crosses the 180th meridian.
+     * @param zoom      Zoom level of the map, it's limited by 0 and MAX_ZOOM.
+     * @param south     Minimal latitude.
+     * @param west      Western longitude.
+     * @param north     Maximal latitude.
+     * @param east      Eastern longitude.
+     * @return Clusters sorted by their cells.
+     */
+    public List<Cluster> getClusters(int zoom, double south, double west, double north, double east) {
+        zoom = Math.max(0, Math.min(MAX_ZOOM, zoom));
+        Level level = levels[zoom];
+        int cells = getCells(zoom);
+        int firstRow = getRow(north, cells);
+        int lastRow = getRow(south, cells);
+        List<Cluster> result = new ArrayList<>();
+        if (west <= east) {
+            collect(level, getColumn(west, cells), getColumn(east, cells), firstRow, lastRow, result);
+        } else {
+            collect(level, getColumn(west, cells), cells - 1, firstRow, lastRow, result);
+            collect(level, 0, getColumn(east, cells), firstRow, lastRow, result);
+        }
+        return result;
+    }
+
+    /**
+     * Adds clusters with cells in the range of columns and rows (inclusive).
+     * Rows out of the range are skipped with binary search, so empty columns cost only one search.
+     */
+    private static void collect(Level level, int firstColumn, int lastColumn, int firstRow, int lastRow,
+            List<Cluster> result) {
+        int i = lowerBound(level, firstColumn, firstRow);
+        while (i < level.columns.length && level.columns[i] <= lastColumn) {
+            if (level.rows[i] < firstRow) {
+                i = lowerBound(level, level.columns[i], firstRow);
+            } else if (level.rows[i] > lastRow) {
+                i = lowerBound(level, level.columns[i] + 1, firstRow);
+            } else {
+                result.add(new Cluster(level.latitudes[i], level.longitudes[i], level.counts[i], level.points[i]));
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first cluster, which cell isn't less than the cell (column, row).
+     */
+    private static int lowerBound(Level level, int column, int row) {
+        int low = 0;
+        int high = level.columns.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (level.columns[middle] < column || level.columns[middle] == column && level.rows[middle] < row) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
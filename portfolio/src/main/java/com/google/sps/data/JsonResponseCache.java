@@ -0,0 +1,127 @@
+package com.google.sps.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches already encoded JSON responses (plain and gzip-compressed) together with their ETags.
+ * Every response is bound to the generation of the data it was built from, and
+ * isn't served anymore after the generation changes or the response expires.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class JsonResponseCache {
+    /**
+     * Represents the encoded response.
+     */
+    public static class EncodedResponse {
+        private final long generation;
+        private final long expirationTime;
+        private final byte[] json;
+        private final byte[] gzippedJson;
+        private final String etag;
+
+        EncodedResponse(long generation, long expirationTime, byte[] json) {
+            this.generation = generation;
+            this.expirationTime = expirationTime;
+            this.json = json;
+            this.gzippedJson = gzip(json);
+            this.etag = computeETag(json);
+        }
+
+        /** @return UTF-8 encoded JSON. */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /** @return Gzip-compressed UTF-8 encoded JSON. */
+        public byte[] getGzippedJson() {
+            return gzippedJson;
+        }
+
+        /** @return Strong ETag (in quotes), which depends only on the content. */
+        public String getETag() {
+            return etag;
+        }
+    }
+
+    private final Clock clock;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, EncodedResponse> responses;
+
+    /** Creates the cache.
+     * @param clock         Clock, which is used to expire responses.
+     * @param maxResponses  Maximal number of cached responses.
+     * @param ttlMillis     Time in milliseconds, after which a response expires.
+     */
+    public JsonResponseCache(Clock clock, int maxResponses, long ttlMillis) {
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.responses = new LinkedHashMap<String, EncodedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EncodedResponse> eldest) {
+                return size() > maxResponses;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached response, if it was built from the current generation of data and isn't expired.
+     * @param key           Key of the response (e.g. built from request parameters).
+     * @param generation    Current generation of data.
+     * @return Encoded response or null.
+     */
+    public synchronized EncodedResponse get(String key, long generation) {
+        EncodedResponse response = responses.get(key);
+        if (response == null || response.generation != generation || response.expirationTime <= clock.millis()) {
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * Encodes the JSON and caches it.
+     * @param key           Key of the response (e.g. built from request parameters).
+     * @param generation    Generation of data, which was read before building the JSON.
+     * @param json          The JSON text.
+     * @return Encoded response.
+     */
+    public EncodedResponse put(String key, long generation, String json) {
+        EncodedResponse response = new EncodedResponse(
+                generation, clock.millis() + ttlMillis, json.getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            EncodedResponse cached = responses.get(key);
+            if (cached == null || cached.generation <= generation) {
+                responses.put(key, response);
+            }
+        }
+        return response;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 4 + 32);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(result)) {
+            gzipStream.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result.toByteArray();
+    }
+
+    private static String computeETag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 isn't supported", e);
+        }
+    }
+}
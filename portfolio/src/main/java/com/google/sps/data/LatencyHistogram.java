@@ -0,0 +1,99 @@
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in microseconds with log-linear buckets (like HdrHistogram):
+ * every power of two is split into SUB_BUCKETS equal buckets, so every quantile is known
+ * with the relative error not bigger than 1/SUB_BUCKETS. All buckets are allocated at once,
+ * and recording a value is one atomic increment of a bucket and of the sum.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Values from 2^MAX_EXPONENT microseconds (about 9.5 hours) are recorded to the last bucket. */
+    private static final int MAX_EXPONENT = 35;
+    private static final int NUMBER_OF_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+
+    private static int bucketIndex(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return NUMBER_OF_BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the biggest value, which is recorded to the bucket (exclusive).
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index + 1;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Records the latency.
+     * @param micros    Latency in microseconds.
+     */
+    public void record(long micros) {
+        counts.incrementAndGet(bucketIndex(micros));
+        totalCount.increment();
+        totalMicros.add(micros);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return Number of values.
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Returns the sum of recorded values.
+     * @return Sum of latencies in microseconds.
+     */
+    public long getSumMicros() {
+        return totalMicros.sum();
+    }
+
+    /**
+     * Returns the approximate value of the quantile. Values, which are recorded concurrently, may be missed.
+     * @param quantile  Quantile from 0 to 1, e.g. 0.99.
+     * @return The upper bound of the bucket with the quantile in microseconds, or 0 if nothing is recorded.
+     */
+    public long getQuantileMicros(double quantile) {
+        long[] snapshot = new long[NUMBER_OF_BUCKETS];
+        long count = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(NUMBER_OF_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,233 @@
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Computes words frequencies of albums from raw lyrics. Every album is a directory,
+ * named 'Musician - Album Title', with text files of its songs. Files are read line by line
+ * and counted in parallel with fork-join: every task counts its files into its own WordCounter,
+ * and counters are merged, when tasks join. Counts of every album are kept, so a new album
+ * is counted alone, and the result is rebuilt from kept counts.
+ * It's run offline (see main), and its output replaces src/main/resources/wordsFrequencies.json,
+ * which is served by WordFrequenciesServlet.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class LyricsPipeline {
+    private static final String ALBUM_NAME_SEPARATOR = " - ";
+    /** Number of the most frequent words of every album, which are written by main. */
+    private static final int DEFAULT_TOP_WORDS = 10;
+    /** Number of files, which are counted by one task without splitting. */
+    private static final int FILES_PER_TASK = 4;
+    /** Words shorter than that are skipped, they are almost always function words. */
+    private static final int MIN_WORD_LENGTH = 3;
+    /** Typographic apostrophe, which is replaced with the plain one. */
+    private static final char RIGHT_SINGLE_QUOTE = '\u2019';
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "you", "your", "are", "was", "were", "for", "but", "not", "all", "any", "can", "did",
+            "don't", "from", "get", "got", "had", "has", "have", "her", "him", "his", "how", "i'm", "its", "it's",
+            "just", "let", "like", "now", "off", "one", "our", "out", "she", "that", "their", "them", "then",
+            "there", "they", "this", "too", "what", "when", "where", "who", "why", "will", "with", "won't",
+            "yeah", "you're", "into", "over", "some", "been", "more", "only", "own", "say", "said", "see", "than",
+            "these", "those", "very", "would", "could", "should", "about", "again", "can't", "i'll", "i've", "we're"));
+
+    /**
+     * Represents the counted album.
+     */
+    private static class Album {
+        private final String musician;
+        private final String title;
+        private final WordCounter counter;
+
+        Album(String musician, String title, WordCounter counter) {
+            this.musician = musician;
+            this.title = title;
+            this.counter = counter;
+        }
+    }
+
+    /**
+     * Counts words of files from 'start' (inclusive) to 'end' (exclusive), splitting the range in halves.
+     */
+    private static class CountTask extends RecursiveTask<WordCounter> {
+        private final List<Path> files;
+        private final int start;
+        private final int end;
+
+        CountTask(List<Path> files, int start, int end) {
+            this.files = files;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected WordCounter compute() {
+            if (end - start <= FILES_PER_TASK) {
+                WordCounter counter = new WordCounter();
+                for (int i = start; i < end; i++) {
+                    countFile(files.get(i), counter);
+                }
+                return counter;
+            }
+            int middle = (start + end) / 2;
+            CountTask left = new CountTask(files, start, middle);
+            left.fork();
+            WordCounter counter = new CountTask(files, middle, end).compute();
+            counter.merge(left.join());
+            return counter;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int topWords;
+    /** Counted albums by directory names, in the order they were added. */
+    private final LinkedHashMap<String, Album> albums = new LinkedHashMap<>();
+    private final Gson gson = new Gson();
+
+    /** Creates the pipeline.
+     * @param pool          Pool, which counts files.
+     * @param topWords      Number of the most frequent words, which are kept in the result for every album.
+     */
+    public LyricsPipeline(ForkJoinPool pool, int topWords) {
+        this.pool = pool;
+        this.topWords = topWords;
+    }
+
+    /**
+     * Splits the line into normalized words: lowercase letters with apostrophes inside,
+     * without stop words and words shorter than MIN_WORD_LENGTH.
+     * @param line      Line of lyrics.
+     * @param counter   Counter, which counts words.
+     */
+    static void countLine(String line, WordCounter counter) {
+        int start = -1;
+        for (int i = 0; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : ' ';
+            boolean isWordChar = Character.isLetter(c)
+                    || (c == '\'' || c == RIGHT_SINGLE_QUOTE) && start >= 0 && i + 1 < line.length()
+                    && Character.isLetter(line.charAt(i + 1));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                String word = line.substring(start, i).replace(RIGHT_SINGLE_QUOTE, '\'').toLowerCase(Locale.ROOT);
+                if (word.length() >= MIN_WORD_LENGTH && !STOP_WORDS.contains(word)) {
+                    counter.add(word);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static void countFile(Path file, WordCounter counter) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                countLine(line, counter);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Counts words of the album and adds it to the result, replacing the previous counts of the same album.
+     * @param albumDirectory    Directory 'Musician - Album Title' with text files of songs.
+     * @throws IOException If the directory or a file can't be read.
+     * @throws IllegalArgumentException If the directory's name doesn't contain the musician and the title.
+     */
+    public void addAlbum(Path albumDirectory) throws IOException {
+        String name = albumDirectory.getFileName().toString();
+        int separator = name.indexOf(ALBUM_NAME_SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Album directory must be named 'Musician - Album Title': " + name);
+        }
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(albumDirectory)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        WordCounter counter;
+        try {
+            counter = pool.invoke(new CountTask(files, 0, files.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Album album = new Album(name.substring(0, separator), name.substring(separator + ALBUM_NAME_SEPARATOR.length()), counter);
+        synchronized (this) {
+            albums.put(name, album);
+        }
+    }
+
+    /**
+     * Counts all albums from the directory. Albums are sorted by their directories' names.
+     * @param lyricsDirectory   Directory with albums' directories.
+     * @throws IOException If a directory or a file can't be read.
+     */
+    public void addAlbums(Path lyricsDirectory) throws IOException {
+        List<Path> albumDirectories;
+        try (Stream<Path> paths = Files.list(lyricsDirectory)) {
+            albumDirectories = paths.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+        for (Path albumDirectory : albumDirectories) {
+            addAlbum(albumDirectory);
+        }
+    }
+
+    /**
+     * Returns the most frequent words of every counted album.
+     * @return Words frequencies in the order, in which albums were added.
+     */
+    public synchronized WordsFrequencies[] getWordsFrequencies() {
+        WordsFrequencies[] result = new WordsFrequencies[albums.size()];
+        int i = 0;
+        for (Album album : albums.values()) {
+            result[i++] = new WordsFrequencies(album.musician, album.title, album.counter.top(topWords));
+        }
+        return result;
+    }
+
+    /**
+     * Writes words frequencies as JSON to the file, which is replaced atomically,
+     * so it can be served by StaticJsonDataset while it's written.
+     * @param file  Output file, e.g. wordsFrequencies.json.
+     * @throws IOException If the file can't be written.
+     */
+    public void writeJson(Path file) throws IOException {
+        Path temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            gson.toJson(getWordsFrequencies(), writer);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Counts all albums from the lyrics directory and writes their words frequencies to the output file.
+     * Usage: LyricsPipeline lyricsDir outputFile [topWords], e.g. from the portfolio directory:
+     * mvn compile org.codehaus.mojo:exec-maven-plugin:3.0.0:java -Dexec.mainClass=com.google.sps.data.LyricsPipeline
+     *     -Dexec.args="path/to/lyrics src/main/resources/wordsFrequencies.json"
+     * @param args  Directory with albums' directories, output file and optional number of words of every album.
+     * @throws IOException If a lyrics file can't be read or the output file can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: LyricsPipeline lyricsDir outputFile [topWords]");
+            System.exit(1);
+        }
+        int topWords = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_TOP_WORDS;
+        LyricsPipeline pipeline = new LyricsPipeline(ForkJoinPool.commonPool(), topWords);
+        pipeline.addAlbums(Paths.get(args[0]));
+        pipeline.writeJson(Paths.get(args[1]));
+        System.out.println("Words frequencies of " + pipeline.getWordsFrequencies().length + " albums are written to " + args[1]);
+    }
+}
@@ -0,0 +1,81 @@
+package com.google.sps.data;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of map points, which is decoded by clients with typed arrays.
+ * All numbers are little-endian, and every section, except the last one, is aligned to 4 bytes:
+ * <pre>
+ * uint32 count, uint32 intColumns, uint32 textColumns
+ * int32[2 * count]             latitude and longitude of every point in millionths of a degree,
+ *                              as differences from the previous point (the first one from 0)
+ * int32[intColumns * count]    integer columns, one after another
+ * uint32[textColumns * count]  lengths of UTF-8 texts in bytes, one column after another
+ * uint8[]                      UTF-8 texts in the same order
+ * </pre>
+ * Coordinates are rounded to 0.11 m, which is more precise than any map marker needs.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public final class PointsBuffer {
+    public static final String CONTENT_TYPE = "application/octet-stream";
+    private static final double FIXED_POINT_SCALE = 1e6;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    private PointsBuffer() {}
+
+    /**
+     * Encodes points.
+     * @param latitudes     Latitudes of points.
+     * @param longitudes    Longitudes of points.
+     * @param intColumns    Integer values of points by columns, every column has a value for every point.
+     * @param textColumns   Texts of points by columns, null texts are encoded as empty ones.
+     * @return Read-only buffer, which position is 0.
+     */
+    public static ByteBuffer encode(double[] latitudes, double[] longitudes, int[][] intColumns,
+                                    String[][] textColumns) {
+        int count = latitudes.length;
+        byte[][][] texts = new byte[textColumns.length][count][];
+        int textsSize = 0;
+        for (int column = 0; column < textColumns.length; column++) {
+            for (int i = 0; i < count; i++) {
+                String text = textColumns[column][i];
+                texts[column][i] = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+                textsSize += texts[column][i].length;
+            }
+        }
+
+        int size = HEADER_SIZE + Integer.BYTES * count * (2 + intColumns.length + textColumns.length) + textsSize;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(count).putInt(intColumns.length).putInt(textColumns.length);
+        int previousLatitude = 0;
+        int previousLongitude = 0;
+        for (int i = 0; i < count; i++) {
+            int latitude = (int) Math.round(latitudes[i] * FIXED_POINT_SCALE);
+            int longitude = (int) Math.round(longitudes[i] * FIXED_POINT_SCALE);
+            buffer.putInt(latitude - previousLatitude).putInt(longitude - previousLongitude);
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+        }
+        for (int[] column : intColumns) {
+            for (int i = 0; i < count; i++) {
+                buffer.putInt(column[i]);
+            }
+        }
+        for (byte[][] column : texts) {
+            for (byte[] text : column) {
+                buffer.putInt(text.length);
+            }
+        }
+        for (byte[][] column : texts) {
+            for (byte[] text : column) {
+                buffer.put(text);
+            }
+        }
+        // Buffer.flip(), because ByteBuffer.flip() doesn't exist on the java8 runtime
+        ((Buffer) buffer).flip();
+        return buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
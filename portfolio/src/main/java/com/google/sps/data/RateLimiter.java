@@ -0,0 +1,87 @@
+package com.google.sps.data;
+
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Limits the rate of actions for every key (e.g. user id) with token buckets.
+ * Every bucket holds up to 'capacity' tokens and gets 'tokensPerSecond' tokens per second,
+ * an action takes one token. Buckets are updated with compare-and-set, without locks.
+ * Buckets, which weren't used long enough to become full again, are evicted,
+ * because an absent bucket is the same as a full one.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class RateLimiter {
+    /**
+     * Represents the immutable state of the bucket: number of tokens at the time of the last update.
+     */
+    private static class BucketState {
+        private final double tokens;
+        private final long updateTime;
+
+        BucketState(double tokens, long updateTime) {
+            this.tokens = tokens;
+            this.updateTime = updateTime;
+        }
+    }
+
+    private final Clock clock;
+    private final double capacity;
+    private final double tokensPerMilli;
+    /** Time in milliseconds, during which an empty bucket becomes full. */
+    private final long refillMillis;
+    private final ConcurrentHashMap<String, AtomicReference<BucketState>> buckets = new ConcurrentHashMap<>();
+    private final FlushSchedule evictionSchedule;
+
+    /** Creates the rate limiter.
+     * @param clock             Clock, which is used to refill buckets.
+     * @param capacity          Maximal number of actions in a burst.
+     * @param tokensPerSecond   Number of actions per second in the long run.
+     */
+    public RateLimiter(Clock clock, int capacity, double tokensPerSecond) {
+        this.clock = clock;
+        this.capacity = capacity;
+        this.tokensPerMilli = tokensPerSecond / 1000;
+        this.refillMillis = (long) Math.ceil(capacity / this.tokensPerMilli);
+        this.evictionSchedule = new FlushSchedule(clock, this.refillMillis);
+    }
+
+    /**
+     * Takes one token from the bucket of the key, if it has one.
+     * @param key   Key of the bucket, e.g. user id.
+     * @return true, if the action is allowed, and false if the rate is exceeded
+     */
+    public boolean tryAcquire(String key) {
+        long now = clock.millis();
+        if (evictionSchedule.tryStart()) {
+            evictIdleBuckets(now);
+        }
+
+        AtomicReference<BucketState> bucket = buckets.computeIfAbsent(
+                key, newKey -> new AtomicReference<>(new BucketState(capacity, now)));
+        while (true) {
+            BucketState state = bucket.get();
+            long elapsed = Math.max(0, now - state.updateTime);
+            double tokens = Math.min(capacity, state.tokens + elapsed * tokensPerMilli);
+            if (tokens < 1) {
+                return false;
+            }
+            if (bucket.compareAndSet(state, new BucketState(tokens - 1, Math.max(now, state.updateTime)))) {
+                return true;
+            }
+        }
+    }
+
+    private void evictIdleBuckets(long now) {
+        buckets.values().removeIf(bucket -> now - bucket.get().updateTime >= refillMillis);
+    }
+
+    /**
+     * Returns the number of buckets, which are kept in memory.
+     * @return Number of buckets.
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
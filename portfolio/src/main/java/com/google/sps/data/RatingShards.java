@@ -0,0 +1,159 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Represents sharded counters of comments' ratings.
+ * The rating of every comment is split between NUMBER_OF_SHARDS entities,
+ * each vote changes only one randomly chosen shard, so votes for the same comment
+ * don't compete for the same entity group. Changed shards are marked as DIRTY, so the comment's
+ * 'rating' property can be recalculated later by any instance (see Comments.materializeRatings()).
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class RatingShards {
+    public static final String SHARD_ENTITY_KIND = "CommentRatingShard";
+    public static final String COUNT = "count";
+    /** True, if the shard was changed after the last materialization of the comment's rating. */
+    public static final String DIRTY = "dirty";
+    public static final int NUMBER_OF_SHARDS = 20;
+
+    private final DatastoreService datastore;
+
+    /** Creates sharded counters, which are stored in the given datastore.
+     * @param datastore     Datastore with shards' entities.
+     */
+    public RatingShards(DatastoreService datastore) {
+        this.datastore = datastore;
+    }
+
+    /**
+     * Creates the key of the shard. Shards are root entities (not children of the comment),
+     * because children share the write limit of the comment's entity group.
+     * @param commentID     Comments' entity id
+     * @param shardIndex    Index of the shard (from 0 to NUMBER_OF_SHARDS - 1)
+     * @return Key of the shard's entity.
+     */
+    private static Key createShardKey(long commentID, int shardIndex) {
+        return KeyFactory.createKey(SHARD_ENTITY_KIND, commentID + "-" + shardIndex);
+    }
+
+    /**
+     * Returns id of the comment, which the shard belongs to.
+     * @param shardKey  Key of the shard's entity.
+     * @return Comments' entity id
+     */
+    private static long getCommentID(Key shardKey) {
+        String name = shardKey.getName();
+        return Long.parseLong(name.substring(0, name.lastIndexOf('-')));
+    }
+
+    /**
+     * Returns keys of all shards of the comment.
+     * @param commentID     Comments' entity id
+     * @return List of keys of the shards' entities.
+     */
+    private static List<Key> getShardKeys(long commentID) {
+        List<Key> keys = new ArrayList<>(NUMBER_OF_SHARDS);
+        for (int i = 0; i < NUMBER_OF_SHARDS; i++) {
+            keys.add(createShardKey(commentID, i));
+        }
+        return keys;
+    }
+
+    /**
+     * Adds changes of ratings to randomly chosen shards of comments in one transaction
+     * and marks these shards as dirty. The transaction must be cross-group, if there are several comments.
+     * @param transaction   Active datastore transaction.
+     * @param deltas        Map from comment id to the change of its rating.
+     */
+    public void addToShards(Transaction transaction, Map<Long, Long> deltas) {
+        Map<Key, Long> shardDeltas = new HashMap<>();
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            int shardIndex = ThreadLocalRandom.current().nextInt(NUMBER_OF_SHARDS);
+            shardDeltas.put(createShardKey(entry.getKey(), shardIndex), entry.getValue());
+        }
+
+        Map<Key, Entity> shards = this.datastore.get(transaction, shardDeltas.keySet());
+        List<Entity> updatedShards = new ArrayList<>();
+        for (Map.Entry<Key, Long> entry : shardDeltas.entrySet()) {
+            Entity shard = shards.get(entry.getKey());
+            if (shard == null) {
+                shard = new Entity(entry.getKey());
+                shard.setProperty(COUNT, 0L);
+            }
+            shard.setProperty(COUNT, (long) shard.getProperty(COUNT) + entry.getValue());
+            shard.setProperty(DIRTY, true);
+            updatedShards.add(shard);
+        }
+        this.datastore.put(transaction, updatedShards);
+    }
+
+    /**
+     * Returns the sum of all shards of the comment, which are read in the transaction,
+     * so the sum can be written back in the same transaction. The transaction must be cross-group.
+     * @param transaction   Active datastore transaction.
+     * @param commentID     Comments' entity id
+     * @return Sum of the rating's shards.
+     */
+    public long getTotal(Transaction transaction, long commentID) {
+        return sumShards(this.datastore.get(transaction, getShardKeys(commentID)).values());
+    }
+
+    /**
+     * Returns the sum of all shards of the comment and marks them as clean in the transaction.
+     * A vote, which changes a shard after it was read, makes the transaction fail,
+     * so the shard can't be marked as clean without its latest change being counted.
+     * The transaction must be cross-group.
+     * @param transaction   Active datastore transaction.
+     * @param commentID     Comments' entity id
+     * @return Sum of the rating's shards.
+     */
+    public long collectTotal(Transaction transaction, long commentID) {
+        Collection<Entity> shards = this.datastore.get(transaction, getShardKeys(commentID)).values();
+        List<Entity> dirtyShards = new ArrayList<>();
+        for (Entity shard : shards) {
+            if (Boolean.TRUE.equals(shard.getProperty(DIRTY))) {
+                shard.setProperty(DIRTY, false);
+                dirtyShards.add(shard);
+            }
+        }
+        this.datastore.put(transaction, dirtyShards);
+        return sumShards(shards);
+    }
+
+    /**
+     * Returns ids of comments, which have dirty shards. The query is eventually consistent,
+     * so the latest changes may be missed until the next call.
+     * @param limit     Maximal number of dirty shards to look at.
+     * @return Set of comments' entity ids.
+     */
+    public Set<Long> getDirtyCommentIDs(int limit) {
+        Query query = new Query(SHARD_ENTITY_KIND)
+                .setFilter(new Query.FilterPredicate(DIRTY, Query.FilterOperator.EQUAL, true))
+                .setKeysOnly();
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Entity shard : this.datastore.prepare(query).asIterable(FetchOptions.Builder.withLimit(limit))) {
+            ids.add(getCommentID(shard.getKey()));
+        }
+        return ids;
+    }
+
+    private static long sumShards(Collection<Entity> shards) {
+        long total = 0;
+        for (Entity shard : shards) {
+            total += (long) shard.getProperty(COUNT);
+        }
+        return total;
+    }
+
+    /**
+     * Deletes all shards of the comment.
+     * @param commentID     Comments' entity id
+     */
+    public void deleteShards(long commentID) {
+        this.datastore.delete(getShardKeys(commentID));
+    }
+}
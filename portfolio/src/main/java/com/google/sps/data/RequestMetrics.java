@@ -0,0 +1,156 @@
+package com.google.sps.data;
+
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects metrics of requests for every route (servlet path) and action:
+ * latency distribution, counts of response statuses and number of datastore calls.
+ * Recorders of all known routes and actions are created at once, requests to unknown routes
+ * are recorded as OTHER_ROUTE, so recording never allocates recorders and never locks.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class RequestMetrics {
+    public static final String OTHER_ROUTE = "other";
+    public static final String NO_ACTION = "";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final int MAX_STATUS = 600;
+    private static final double MICROS_IN_SECOND = 1e6;
+
+    /** Number of datastore calls, which were made by the current request's thread. */
+    private static final ThreadLocal<long[]> datastoreCalls = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Represents metrics of one route and action.
+     */
+    private static class Recorder {
+        private final String route;
+        private final String action;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+        private final LongAdder datastoreCalls = new LongAdder();
+
+        Recorder(String route, String action) {
+            this.route = route;
+            this.action = action;
+        }
+    }
+
+    /** Recorders by keys 'route#action', the map is never changed after the creation. */
+    private final Map<String, Recorder> recorders;
+
+    /** Creates recorders for all combinations of routes and actions and for OTHER_ROUTE.
+     * @param routes    Known servlet paths with their actions, NO_ACTION is added to every route.
+     */
+    public RequestMetrics(Map<String, Collection<String>> routes) {
+        Map<String, Recorder> recorders = new LinkedHashMap<>();
+        Map<String, Collection<String>> allRoutes = new LinkedHashMap<>(routes);
+        allRoutes.putIfAbsent(OTHER_ROUTE, Collections.emptyList());
+        for (Map.Entry<String, Collection<String>> route : allRoutes.entrySet()) {
+            recorders.put(createKey(route.getKey(), NO_ACTION), new Recorder(route.getKey(), NO_ACTION));
+            for (String action : route.getValue()) {
+                recorders.put(createKey(route.getKey(), action), new Recorder(route.getKey(), action));
+            }
+        }
+        this.recorders = Collections.unmodifiableMap(recorders);
+    }
+
+    private static String createKey(String route, String action) {
+        return route + "#" + action;
+    }
+
+    /**
+     * Starts counting datastore calls of the request, which is handled by the current thread.
+     */
+    public static void startRequest() {
+        datastoreCalls.get()[0] = 0;
+    }
+
+    /**
+     * Counts the datastore call of the current thread's request.
+     */
+    public static void onDatastoreCall() {
+        datastoreCalls.get()[0]++;
+    }
+
+    /**
+     * Returns the number of datastore calls, which were made by the current thread since startRequest().
+     * @return Number of calls.
+     */
+    public static long getDatastoreCalls() {
+        return datastoreCalls.get()[0];
+    }
+
+    /**
+     * Records the finished request. Unknown routes are recorded as OTHER_ROUTE and unknown actions as NO_ACTION.
+     * @param route             Servlet path.
+     * @param action            Action or NO_ACTION.
+     * @param status            Status of the response.
+     * @param micros            Latency in microseconds.
+     * @param datastoreCalls    Number of datastore calls, made by the request.
+     */
+    public void record(String route, String action, int status, long micros, long datastoreCalls) {
+        Recorder recorder = recorders.get(createKey(route, action));
+        if (recorder == null) {
+            recorder = recorders.get(createKey(route, NO_ACTION));
+        }
+        if (recorder == null) {
+            recorder = recorders.get(createKey(OTHER_ROUTE, NO_ACTION));
+        }
+        recorder.latency.record(micros);
+        if (status >= 0 && status < MAX_STATUS) {
+            recorder.statusCounts.incrementAndGet(status);
+        }
+        recorder.datastoreCalls.add(datastoreCalls);
+    }
+
+    private static String createLabels(Recorder recorder) {
+        return "route=\"" + recorder.route + "\",action=\"" + recorder.action + "\"";
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text format. Routes and actions without requests are skipped.
+     * @param writer    Writer of the response.
+     */
+    public void writePrometheus(PrintWriter writer) {
+        writer.print("# HELP portfolio_request_duration_seconds Latency of requests.\n");
+        writer.print("# TYPE portfolio_request_duration_seconds summary\n");
+        for (Recorder recorder : recorders.values()) {
+            long count = recorder.latency.getCount();
+            if (count == 0) {
+                continue;
+            }
+            String labels = createLabels(recorder);
+            for (double quantile : QUANTILES) {
+                writer.print("portfolio_request_duration_seconds{" + labels + ",quantile=\"" + quantile + "\"} "
+                        + recorder.latency.getQuantileMicros(quantile) / MICROS_IN_SECOND + "\n");
+            }
+            writer.print("portfolio_request_duration_seconds_sum{" + labels + "} "
+                    + recorder.latency.getSumMicros() / MICROS_IN_SECOND + "\n");
+            writer.print("portfolio_request_duration_seconds_count{" + labels + "} " + count + "\n");
+        }
+
+        writer.print("# HELP portfolio_responses_total Number of responses by status.\n");
+        writer.print("# TYPE portfolio_responses_total counter\n");
+        for (Recorder recorder : recorders.values()) {
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = recorder.statusCounts.get(status);
+                if (count > 0) {
+                    writer.print("portfolio_responses_total{" + createLabels(recorder)
+                            + ",status=\"" + status + "\"} " + count + "\n");
+                }
+            }
+        }
+
+        writer.print("# HELP portfolio_datastore_calls_total Number of datastore calls made by requests.\n");
+        writer.print("# TYPE portfolio_datastore_calls_total counter\n");
+        for (Recorder recorder : recorders.values()) {
+            if (recorder.latency.getCount() > 0) {
+                writer.print("portfolio_datastore_calls_total{" + createLabels(recorder) + "} "
+                        + recorder.datastoreCalls.sum() + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Caches comments in memcache, so that the cache is shared between all App Engine instances.
+ * Listings are stored under keys with the version of comments, which is increased after every change,
+ * so old listings aren't read anymore and are evicted by memcache. The separate version of deletions
+ * is increased only after deletions, so instances know when their search indexes must be rebuilt.
+ * If memcache is unavailable, all methods behave as if the cache is empty.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class SharedCommentsCache {
+    private static final String NAMESPACE = "comments";
+    private static final String VERSION_KEY = "version";
+    private static final String DELETIONS_VERSION_KEY = "deletions-version";
+    private static final String LISTING_KEY_PREFIX = "listing:";
+    private static final String AUTHOR_KEY_PREFIX = "author:";
+
+    private final MemcacheService memcache;
+    private final Clock clock;
+
+    /** Creates the cache.
+     * @param clock     Clock, which gives the initial version, so it isn't repeated after memcache eviction.
+     */
+    public SharedCommentsCache(Clock clock) {
+        this.memcache = MemcacheServiceFactory.getMemcacheService(NAMESPACE);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the current version of comments.
+     * @return Version or null, if memcache is unavailable.
+     */
+    public Long getVersion() {
+        return getCounter(VERSION_KEY);
+    }
+
+    /**
+     * Increases the version of comments, so all listings become outdated.
+     * @return The new version or null, if memcache is unavailable.
+     */
+    public Long incrementVersion() {
+        return memcache.increment(VERSION_KEY, 1, clock.millis());
+    }
+
+    /**
+     * Returns the current version of deletions of comments.
+     * @return Version or null, if memcache is unavailable.
+     */
+    public Long getDeletionsVersion() {
+        return getCounter(DELETIONS_VERSION_KEY);
+    }
+
+    /**
+     * Increases the version of deletions, so search indexes of all instances become outdated.
+     * @return The new version or null, if memcache is unavailable.
+     */
+    public Long incrementDeletionsVersion() {
+        return memcache.increment(DELETIONS_VERSION_KEY, 1, clock.millis());
+    }
+
+    private Long getCounter(String key) {
+        Long counter = (Long) memcache.get(key);
+        if (counter == null) {
+            // increment with the initial value creates the counter atomically, if it doesn't exist
+            counter = memcache.increment(key, 0, clock.millis());
+        }
+        return counter;
+    }
+
+    private static String createListingKey(String type, int quantity, long version) {
+        return LISTING_KEY_PREFIX + version + ":" + type + ":" + quantity;
+    }
+
+    /**
+     * Returns the cached listing of comments.
+     * @param type      Sort order ('date' or 'rating').
+     * @param quantity  Number of comments in the listing.
+     * @param version   Version of comments.
+     * @return List of pairs (Comment id, Comment object) or null, if it isn't cached.
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<Map.Entry<Long, Comments.Comment>> getListing(String type, int quantity, long version) {
+        return (ArrayList<Map.Entry<Long, Comments.Comment>>) memcache.get(createListingKey(type, quantity, version));
+    }
+
+    /**
+     * Caches the listing of comments for LISTINGS_CACHE_TTL_MILLIS. The listing is loaded with
+     * an eventually consistent query, so it can miss recent changes and mustn't live until eviction.
+     * @param type      Sort order ('date' or 'rating').
+     * @param quantity  Number of comments in the listing.
+     * @param version   Version of comments, which was read before loading the listing.
+     * @param comments  List of pairs (Comment id, Comment object).
+     */
+    public void putListing(String type, int quantity, long version, ArrayList<Map.Entry<Long, Comments.Comment>> comments) {
+        memcache.put(createListingKey(type, quantity, version), comments,
+                Expiration.byDeltaMillis((int) Comments.LISTINGS_CACHE_TTL_MILLIS));
+    }
+
+    /**
+     * Returns the cached id of comment's author.
+     * @param id    Comments' entity id
+     * @return Author's id or null, if it isn't cached.
+     */
+    public String getAuthorID(long id) {
+        return (String) memcache.get(AUTHOR_KEY_PREFIX + id);
+    }
+
+    /**
+     * Caches the id of comment's author. It never changes, so it doesn't depend on the version.
+     * @param id        Comments' entity id
+     * @param authorID  Author's id.
+     */
+    public void putAuthorID(long id, String authorID) {
+        memcache.put(AUTHOR_KEY_PREFIX + id, authorID);
+    }
+
+    /**
+     * Removes the cached id of comment's author.
+     * @param id    Comments' entity id
+     */
+    public void deleteAuthorID(long id) {
+        memcache.delete(AUTHOR_KEY_PREFIX + id);
+    }
+}
@@ -2,7 +2,7 @@ package com.google.sps.data;
 
 /**
  * Represents a shawarma place (it's location, name and description about its shawarmas).
- * This class is only used by GSON with the help of reflection.
+ * This class is mostly created by GSON with the help of reflection.
  * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
  */
 public class ShawarmaPlace {
@@ -10,4 +10,30 @@ public class ShawarmaPlace {
     private double longitude;
     private String name;
     private String description;
-}
\ No newline at end of file
+
+    /** Used by GSON. */
+    private ShawarmaPlace() {}
+
+    public ShawarmaPlace(double latitude, double longitude, String name, String description) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.name = name;
+        this.description = description;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,207 @@
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial index of shawarma places, which finds places in the bounding box or nearest to the point
+ * in logarithmic time. It's an implicit k-d tree: coordinates are kept in primitive arrays,
+ * every range is split by its median place, latitude and longitude splits alternate,
+ * and the median of the range [start, end) is at (start + end) / 2, so no nodes are allocated.
+ * Distances are measured on the plane with longitudes scaled by the cosine of the latitude,
+ * which is accurate enough for places in one city.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class ShawarmaPlacesIndex {
+    private static final int LATITUDE = 0;
+    private static final int LONGITUDE = 1;
+
+    private final ShawarmaPlace[] places;
+    /** Coordinates by axis: coordinates[LATITUDE][i] is the latitude of places[i]. */
+    private final double[][] coordinates;
+
+    /** Builds the index.
+     * @param shawarmaPlaces    Shawarma places, they aren't modified.
+     */
+    public ShawarmaPlacesIndex(ShawarmaPlace[] shawarmaPlaces) {
+        places = shawarmaPlaces.clone();
+        coordinates = new double[2][places.length];
+        for (int i = 0; i < places.length; i++) {
+            coordinates[LATITUDE][i] = places[i].getLatitude();
+            coordinates[LONGITUDE][i] = places[i].getLongitude();
+        }
+        build(0, places.length, LATITUDE);
+    }
+
+    private void build(int start, int end, int axis) {
+        if (end - start <= 1) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        select(start, end - 1, middle, axis);
+        build(start, middle, 1 - axis);
+        build(middle + 1, end, 1 - axis);
+    }
+
+    /**
+     * Moves places between 'left' and 'right' (inclusive), so the k-th place is on its sorted position
+     * by the axis, places before it aren't greater and places after it aren't less (quickselect).
+     */
+    private void select(int left, int right, int k, int axis) {
+        double[] values = coordinates[axis];
+        while (left < right) {
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        ShawarmaPlace place = places[i];
+        places[i] = places[j];
+        places[j] = place;
+        for (double[] values : coordinates) {
+            double value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    /**
+     * Returns places in the bounding box. If 'west' is greater than 'east', the box crosses the 180th meridian.
+     * @param south     Minimal latitude.
+     * @param west      Western longitude.
+     * @param north     Maximal latitude.
+     * @param east      Eastern longitude.
+     * @return Places in the box, including its borders, in no particular order.
+     */
+    public List<ShawarmaPlace> getPlaces(double south, double west, double north, double east) {
+        List<ShawarmaPlace> result = new ArrayList<>();
+        if (west <= east) {
+            search(0, places.length, LATITUDE, new double[] {south, west}, new double[] {north, east}, result);
+        } else {
+            search(0, places.length, LATITUDE, new double[] {south, west}, new double[] {north, 180}, result);
+            search(0, places.length, LATITUDE, new double[] {south, -180}, new double[] {north, east}, result);
+        }
+        return result;
+    }
+
+    private void search(int start, int end, int axis, double[] min, double[] max, List<ShawarmaPlace> result) {
+        while (start < end) {
+            int middle = (start + end) >>> 1;
+            double latitude = coordinates[LATITUDE][middle];
+            double longitude = coordinates[LONGITUDE][middle];
+            if (min[LATITUDE] <= latitude && latitude <= max[LATITUDE]
+                    && min[LONGITUDE] <= longitude && longitude <= max[LONGITUDE]) {
+                result.add(places[middle]);
+            }
+            double value = coordinates[axis][middle];
+            boolean searchLeft = min[axis] <= value;
+            boolean searchRight = value <= max[axis];
+            if (searchLeft && searchRight) {
+                search(start, middle, 1 - axis, min, max, result);
+            }
+            // the remaining half is searched in the loop
+            if (searchRight) {
+                start = middle + 1;
+            } else if (searchLeft) {
+                end = middle;
+            } else {
+                return;
+            }
+            axis = 1 - axis;
+        }
+    }
+
+    /**
+     * Represents the k nearest places found so far, sorted by their squared distances.
+     */
+    private static class Nearest {
+        private final int[] indices;
+        private final double[] distances;
+        private int size = 0;
+
+        Nearest(int k) {
+            indices = new int[k];
+            distances = new double[k];
+        }
+
+        /** Returns the squared distance, which a place must beat to be added. */
+        double getBound() {
+            return size < distances.length ? Double.POSITIVE_INFINITY : distances[size - 1];
+        }
+
+        void add(int index, double distance) {
+            int i = size < distances.length ? size++ : size - 1;
+            // shifts farther places, k is small, so it's faster than a heap
+            while (i > 0 && distances[i - 1] > distance) {
+                indices[i] = indices[i - 1];
+                distances[i] = distances[i - 1];
+                i--;
+            }
+            indices[i] = index;
+            distances[i] = distance;
+        }
+    }
+
+    /**
+     * Returns the nearest places to the point.
+     * @param latitude      Latitude of the point.
+     * @param longitude     Longitude of the point.
+     * @param k             Maximal number of places.
+     * @return Places, the nearest first.
+     */
+    public List<ShawarmaPlace> getNearestPlaces(double latitude, double longitude, int k) {
+        Nearest nearest = new Nearest(Math.min(k, places.length));
+        if (nearest.indices.length > 0) {
+            double[] point = {latitude, longitude};
+            double[] scales = {1, Math.cos(Math.toRadians(latitude))};
+            searchNearest(0, places.length, LATITUDE, point, scales, nearest);
+        }
+        List<ShawarmaPlace> result = new ArrayList<>(nearest.size);
+        for (int i = 0; i < nearest.size; i++) {
+            result.add(places[nearest.indices[i]]);
+        }
+        return result;
+    }
+
+    private void searchNearest(int start, int end, int axis, double[] point, double[] scales, Nearest nearest) {
+        if (start >= end) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        double latitudeDistance = (coordinates[LATITUDE][middle] - point[LATITUDE]) * scales[LATITUDE];
+        double longitudeDistance = (coordinates[LONGITUDE][middle] - point[LONGITUDE]) * scales[LONGITUDE];
+        double distance = latitudeDistance * latitudeDistance + longitudeDistance * longitudeDistance;
+        if (distance < nearest.getBound()) {
+            nearest.add(middle, distance);
+        }
+
+        double splitDistance = (point[axis] - coordinates[axis][middle]) * scales[axis];
+        boolean isLeftNearer = splitDistance < 0;
+        searchNearest(isLeftNearer ? start : middle + 1, isLeftNearer ? middle : end, 1 - axis, point, scales, nearest);
+        // the farther half can only contain nearer places, if the split is nearer than the current bound
+        if (splitDistance * splitDistance < nearest.getBound()) {
+            searchNearest(isLeftNearer ? middle + 1 : start, isLeftNearer ? end : middle, 1 - axis, point, scales,
+                    nearest);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static JSON file, which is memory-mapped, so its bytes are served without copying them to the heap.
+ * The file is validated once, when it's loaded, and the gzip-compressed variant is computed at the same time.
+ * If the file is changed, it's reloaded on the next call of getContent(). The file must be replaced
+ * atomically (written to another file and renamed), because a mapped file mustn't be truncated while it's read.
+ * @param <T> Type of the JSON content, which is used for validation.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class StaticJsonDataset<T> {
+    private static final Logger logger = Logger.getLogger(StaticJsonDataset.class.getName());
+
+    /**
+     * Represents the loaded version of the file.
+     * @param <T> Type of the JSON content.
+     */
+    public static class Content<T> {
+        private final ByteBuffer json;
+        private final byte[] gzippedJson;
+        private final String etag;
+        private final T value;
+
+        Content(ByteBuffer json, byte[] gzippedJson, String etag, T value) {
+            this.json = json;
+            this.gzippedJson = gzippedJson;
+            this.etag = etag;
+            this.value = value;
+        }
+
+        /** @return Read-only view of the mapped UTF-8 encoded JSON, positioned at its beginning. */
+        public ByteBuffer getJson() {
+            return json.duplicate();
+        }
+
+        /** @return Length of the JSON in bytes. */
+        public int getLength() {
+            return json.limit();
+        }
+
+        /** @return Gzip-compressed UTF-8 encoded JSON. */
+        public byte[] getGzippedJson() {
+            return gzippedJson;
+        }
+
+        /** @return Strong ETag (in quotes), which depends only on the content. */
+        public String getETag() {
+            return etag;
+        }
+
+        /** @return Parsed JSON. */
+        public T getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Reads the mapped buffer as a stream, so it can be parsed without decoding it to a string first.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+
+    private final Path path;
+    private final Class<T> type;
+    private final Gson gson = new Gson();
+    private volatile Content<T> content;
+    /** True, if the last attempt to load the file failed, because it's invalid (and not missing). */
+    private volatile boolean invalid = false;
+    /** Watches the directory of the file, it's null, if the file system doesn't support watching. */
+    private WatchService watchService;
+
+    /** Creates the dataset, which must be opened before use.
+     * @param path  Path to the JSON file.
+     * @param type  Type of the JSON content.
+     */
+    public StaticJsonDataset(Path path, Class<T> type) {
+        this.path = path;
+        this.type = type;
+    }
+
+    /**
+     * Loads the file and starts watching for its changes.
+     */
+    public void open() {
+        try {
+            watchService = path.getFileSystem().newWatchService();
+            path.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.log(Level.WARNING, "Changes of " + path + " won't be reloaded", e);
+            close();
+        }
+        reload();
+    }
+
+    /**
+     * Stops watching for changes of the file.
+     */
+    public synchronized void close() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+            // the service isn't used anymore
+        }
+        watchService = null;
+    }
+
+    /**
+     * Returns the last valid version of the file, reloading it first, if it was changed.
+     * @return Content or null, if the file has never been loaded successfully.
+     */
+    public Content<T> getContent() {
+        reloadIfChanged();
+        return content;
+    }
+
+    /**
+     * Tells why the content is missing.
+     * @return true, if the file is invalid, and false if it can't be read
+     */
+    public boolean isInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Reloads the file, if the watch service reported its change. Doesn't block, if there are no changes.
+     */
+    private void reloadIfChanged() {
+        WatchService watcher = watchService;
+        if (watcher == null) {
+            return;
+        }
+        WatchKey key;
+        try {
+            key = watcher.poll();
+        } catch (ClosedWatchServiceException e) {
+            return;
+        }
+        if (key == null) {
+            return;
+        }
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= path.getFileName().equals(event.context())
+                    || StandardWatchEventKinds.OVERFLOW.equals(event.kind());
+        }
+        key.reset();
+        if (changed) {
+            reload();
+        }
+    }
+
+    /**
+     * Maps, validates and compresses the file. If it's invalid, the previous version keeps being served.
+     * It's called, when the watch service reports the change, and can be called directly,
+     * if the file is known to be changed.
+     */
+    public synchronized void reload() {
+        ByteBuffer json;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            json = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Can't read " + path, e);
+            invalid = false;
+            return;
+        }
+
+        T value;
+        try {
+            value = gson.fromJson(new InputStreamReader(
+                    new ByteBufferInputStream(json.duplicate()), StandardCharsets.UTF_8), type);
+            if (value == null) {
+                throw new JsonParseException("The file is empty");
+            }
+        } catch (JsonParseException e) {
+            logger.log(Level.WARNING, "Invalid file " + path, e);
+            invalid = true;
+            return;
+        }
+        content = new Content<>(json, gzip(json.duplicate()), computeETag(json.duplicate()), value);
+        invalid = false;
+    }
+
+    private static byte[] gzip(ByteBuffer data) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.remaining() / 4 + 32);
+        byte[] chunk = new byte[8192];
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(result)) {
+            while (data.hasRemaining()) {
+                int length = Math.min(chunk.length, data.remaining());
+                data.get(chunk, 0, length);
+                gzipStream.write(chunk, 0, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result.toByteArray();
+    }
+
+    private static String computeETag(ByteBuffer data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 isn't supported", e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceException;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers which comments every user has voted for, so that a user can vote for a comment only once.
+ * Every vote is stored in the datastore as the entity of kind VOTE_ENTITY_KIND with the name 'userID:commentID',
+ * which is created in the same transaction as the change of the rating's shard, so a vote is either
+ * recorded and counted or neither, and concurrent repeated votes are rejected.
+ * Recorded votes are also cached in memcache and in the local LRU map, so most repeated votes
+ * are rejected without calling the datastore. Both caches may lose entries, then the datastore is checked.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class VoteLedger {
+    public static final String VOTE_ENTITY_KIND = "Vote";
+    public static final String USER_ID = "userID";
+    public static final String COMMENT_ID = "commentID";
+    private static final String NAMESPACE = "votes";
+    /** Maximal number of votes, which are cached locally, the least recently used ones are evicted. */
+    private static final int MAX_LOCAL_VOTES = 100000;
+    /** Number of attempts to record the vote, every attempt chooses a random shard. */
+    private static final int MAX_VOTE_ATTEMPTS = 3;
+    /** Maximal number of votes, which are deleted with one batched delete. */
+    private static final int MAX_BATCH_DELETE_SIZE = 500;
+
+    /** Result of recording the vote. */
+    public enum VoteResult { NOT_FOUND, DUPLICATE, RECORDED }
+
+    private final DatastoreService datastore;
+    private final RatingShards ratingShards;
+    private final MemcacheService memcache;
+    private final Map<String, Boolean> localVotes;
+
+    /** Creates the ledger of votes.
+     * @param datastore     Datastore with votes' entities.
+     * @param ratingShards  Shards of ratings, which are changed together with recording votes.
+     */
+    public VoteLedger(DatastoreService datastore, RatingShards ratingShards) {
+        this.datastore = datastore;
+        this.ratingShards = ratingShards;
+        this.memcache = MemcacheServiceFactory.getMemcacheService(NAMESPACE);
+        // the strict handler throws on errors, so they can be told apart from missed entries
+        this.memcache.setErrorHandler(ErrorHandlers.getStrict());
+        this.localVotes = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_LOCAL_VOTES;
+            }
+        });
+    }
+
+    /**
+     * Records the vote of the user for the comment and adds it to a shard of the comment's rating
+     * in one cross-group transaction, if the comment exists and the user hasn't voted for it yet.
+     * Conflicting transactions are retried, so a concurrent repeated vote is found by the retry.
+     * @param userID    Id of the user.
+     * @param id        Comments' entity id
+     * @param delta     Change of the rating (1 for upvote and -1 for downvote)
+     * @throws ConcurrentModificationException If all attempts conflicted with concurrent votes.
+     * @return NOT_FOUND, if there's no comment with this id, DUPLICATE, if the user has already voted for it,
+     *         and RECORDED otherwise.
+     */
+    public VoteResult tryRecord(String userID, long id, long delta) {
+        String name = userID + ":" + id;
+        if (isCached(name)) {
+            return VoteResult.DUPLICATE;
+        }
+        try {
+            // the lookup by key is strongly consistent, and it isn't a part of the transaction,
+            // so votes don't contend with writes of the comment's rating
+            datastore.get(KeyFactory.createKey(Comments.COMMENT_ENTITY_KIND, id));
+        } catch (EntityNotFoundException e) {
+            return VoteResult.NOT_FOUND;
+        }
+
+        Key voteKey = KeyFactory.createKey(VOTE_ENTITY_KIND, name);
+        for (int attempt = 1; ; attempt++) {
+            Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+            try {
+                if (exists(transaction, voteKey)) {
+                    cache(name);
+                    return VoteResult.DUPLICATE;
+                }
+                Entity vote = new Entity(voteKey);
+                vote.setProperty(USER_ID, userID);
+                vote.setProperty(COMMENT_ID, id);
+                datastore.put(transaction, vote);
+                ratingShards.addToShards(transaction, Collections.singletonMap(id, delta));
+                transaction.commit();
+                break;
+            } catch (ConcurrentModificationException e) {
+                if (attempt == MAX_VOTE_ATTEMPTS) {
+                    throw e;
+                }
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+        }
+        cache(name);
+        return VoteResult.RECORDED;
+    }
+
+    /**
+     * Deletes all recorded votes for the comment. The query is eventually consistent,
+     * so votes, which were recorded right before the deletion of the comment, may be left.
+     * @param id    Comments' entity id
+     */
+    public void deleteVotes(long id) {
+        Query query = new Query(VOTE_ENTITY_KIND)
+                .setFilter(new Query.FilterPredicate(COMMENT_ID, Query.FilterOperator.EQUAL, id))
+                .setKeysOnly();
+        List<Key> batch = new ArrayList<>();
+        for (Entity vote : datastore.prepare(query).asIterable(FetchOptions.Builder.withChunkSize(MAX_BATCH_DELETE_SIZE))) {
+            batch.add(vote.getKey());
+            if (batch.size() == MAX_BATCH_DELETE_SIZE) {
+                datastore.delete(batch);
+                batch.clear();
+            }
+        }
+        datastore.delete(batch);
+    }
+
+    private boolean exists(Transaction transaction, Key key) {
+        try {
+            datastore.get(transaction, key);
+            return true;
+        } catch (EntityNotFoundException e) {
+            return false;
+        }
+    }
+
+    private boolean isCached(String name) {
+        if (localVotes.containsKey(name)) {
+            return true;
+        }
+        try {
+            return memcache.contains(name);
+        } catch (MemcacheServiceException e) {
+            return false;
+        }
+    }
+
+    private void cache(String name) {
+        try {
+            memcache.put(name, Boolean.TRUE);
+        } catch (MemcacheServiceException ignored) {
+            // the vote is stored in the datastore anyway
+        }
+        localVotes.put(name, Boolean.TRUE);
+    }
+}
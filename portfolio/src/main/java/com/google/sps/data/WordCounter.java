@@ -0,0 +1,128 @@
+package com.google.sps.data;
+
+import java.util.Arrays;
+
+/**
+ * Counts words in the open-addressing hash table with primitive counts,
+ * so counting doesn't box integers or allocate entries. It isn't thread-safe:
+ * every thread counts into its own counter, and counters are merged at the end.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class WordCounter {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private String[] words = new String[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Adds the number of occurrences of the word.
+     * @param word      The word.
+     * @param count     Number of occurrences.
+     */
+    public void add(String word, int count) {
+        // the load factor is kept under 1/2, so probing is short
+        if (2 * (size + 1) > words.length) {
+            resize();
+        }
+        int mask = words.length - 1;
+        int slot = mix(word.hashCode()) & mask;
+        while (words[slot] != null) {
+            if (words[slot].equals(word)) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        words[slot] = word;
+        counts[slot] = count;
+        size++;
+    }
+
+    /**
+     * Adds one occurrence of the word.
+     * @param word      The word.
+     */
+    public void add(String word) {
+        add(word, 1);
+    }
+
+    /**
+     * Adds all counts of the other counter to this one.
+     * @param other     Another counter.
+     */
+    public void merge(WordCounter other) {
+        for (int i = 0; i < other.words.length; i++) {
+            if (other.words[i] != null) {
+                add(other.words[i], other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of occurrences of the word.
+     * @param word      The word.
+     * @return Count, 0 if the word wasn't counted.
+     */
+    public int get(String word) {
+        int mask = words.length - 1;
+        int slot = mix(word.hashCode()) & mask;
+        while (words[slot] != null) {
+            if (words[slot].equals(word)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of different words.
+     * @return Number of words.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the most frequent words, ties are ordered alphabetically.
+     * @param k     Maximal number of words.
+     * @return Words with their counts, the most frequent first.
+     */
+    public WordsFrequencies.WordFrequency[] top(int k) {
+        Integer[] slots = new Integer[size];
+        int filled = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != null) {
+                slots[filled++] = i;
+            }
+        }
+        Arrays.sort(slots, (first, second) -> counts[first] != counts[second]
+                ? Integer.compare(counts[second], counts[first])
+                : words[first].compareTo(words[second]));
+
+        WordsFrequencies.WordFrequency[] result = new WordsFrequencies.WordFrequency[Math.min(k, size)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new WordsFrequencies.WordFrequency(words[slots[i]], counts[slots[i]]);
+        }
+        return result;
+    }
+
+    private static int mix(int hash) {
+        // spreads higher bits to lower ones, because only lower bits select the slot
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize() {
+        String[] oldWords = words;
+        int[] oldCounts = counts;
+        words = new String[oldWords.length * 2];
+        counts = new int[oldWords.length * 2];
+        size = 0;
+        for (int i = 0; i < oldWords.length; i++) {
+            if (oldWords[i] != null) {
+                add(oldWords[i], oldCounts[i]);
+            }
+        }
+    }
+}
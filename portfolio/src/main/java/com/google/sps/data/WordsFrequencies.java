@@ -2,18 +2,55 @@ package com.google.sps.data;
 
 /**
  * Represents frequencies of some words from music album.
- * This class is only used by GSON with the help of reflection.
+ * This class is mostly created by GSON with the help of reflection.
  * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
  */
 public class WordsFrequencies {
     /**
      * Represents a word with its frequency in some text.
      */
-    private final class WordFrequency {
+    public static final class WordFrequency {
         private String word;
         private int frequency;
+
+        /** Used by GSON. */
+        private WordFrequency() {}
+
+        public WordFrequency(String word, int frequency) {
+            this.word = word;
+            this.frequency = frequency;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        public int getFrequency() {
+            return frequency;
+        }
     }
     private String musician;
     private String albumTitle;
     private WordFrequency[] words;
-}
\ No newline at end of file
+
+    /** Used by GSON. */
+    private WordsFrequencies() {}
+
+    public WordsFrequencies(String musician, String albumTitle, WordFrequency[] words) {
+        this.musician = musician;
+        this.albumTitle = albumTitle;
+        this.words = words;
+    }
+
+    public String getMusician() {
+        return musician;
+    }
+
+    public String getAlbumTitle() {
+        return albumTitle;
+    }
+
+    public WordFrequency[] getWords() {
+        return words;
+    }
+}
@@ -0,0 +1,202 @@
+package com.google.sps.data;
+
+import java.util.*;
+
+/**
+ * Indexed in-memory model of words frequencies, which answers queries in O(K) for K results.
+ * Words of every album are kept in parallel arrays sorted by frequency, and every word
+ * has the list of albums with its frequencies in them. Totals of all albums are also precomputed.
+ * Titles and words are matched case-insensitively.
+ * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
+ */
+public class WordsFrequenciesIndex {
+    /**
+     * Represents the album with its words sorted by frequency, the most frequent first.
+     */
+    private static class Album {
+        private final String musician;
+        private final String title;
+        private final String[] words;
+        private final int[] frequencies;
+
+        Album(String musician, String title, String[] words, int[] frequencies) {
+            this.musician = musician;
+            this.title = title;
+            this.words = words;
+            this.frequencies = frequencies;
+        }
+    }
+
+    /**
+     * Represents indices of albums, which contain the word, and its frequencies in them, the most frequent first.
+     */
+    private static class Occurrences {
+        private final int[] albums;
+        private final int[] frequencies;
+
+        Occurrences(int[] albums, int[] frequencies) {
+            this.albums = albums;
+            this.frequencies = frequencies;
+        }
+    }
+
+    /**
+     * Represents the frequency of some word in the album.
+     */
+    public static class AlbumFrequency {
+        private final String musician;
+        private final String albumTitle;
+        private final int frequency;
+
+        AlbumFrequency(String musician, String albumTitle, int frequency) {
+            this.musician = musician;
+            this.albumTitle = albumTitle;
+            this.frequency = frequency;
+        }
+
+        public String getAlbumTitle() {
+            return albumTitle;
+        }
+
+        public int getFrequency() {
+            return frequency;
+        }
+    }
+
+    private final Album[] albums;
+    private final HashMap<String, Integer> albumsByTitle = new HashMap<>();
+    private final HashMap<String, Occurrences> occurrencesByWord = new HashMap<>();
+    /** Words of all albums, sorted by their total frequency, the most frequent first. */
+    private final String[] totalWords;
+    private final int[] totalFrequencies;
+
+    /** Builds the index.
+     * @param wordsFrequencies  Words frequencies of albums.
+     */
+    public WordsFrequenciesIndex(WordsFrequencies[] wordsFrequencies) {
+        albums = new Album[wordsFrequencies.length];
+        Map<String, Map<Integer, Integer>> albumFrequenciesByWord = new HashMap<>();
+        Map<String, Integer> totals = new HashMap<>();
+        for (int i = 0; i < wordsFrequencies.length; i++) {
+            WordsFrequencies album = wordsFrequencies[i];
+            // the same word can be listed twice, its frequencies are summed
+            Map<String, Integer> frequencies = new HashMap<>();
+            if (album.getWords() != null) {
+                for (WordsFrequencies.WordFrequency wordFrequency : album.getWords()) {
+                    if (wordFrequency != null && wordFrequency.getWord() != null) {
+                        frequencies.merge(normalize(wordFrequency.getWord()), wordFrequency.getFrequency(), Integer::sum);
+                    }
+                }
+            }
+
+            List<Map.Entry<String, Integer>> sorted = sortByFrequency(frequencies);
+            String[] words = new String[sorted.size()];
+            int[] wordFrequencies = new int[sorted.size()];
+            for (int j = 0; j < sorted.size(); j++) {
+                words[j] = sorted.get(j).getKey();
+                wordFrequencies[j] = sorted.get(j).getValue();
+                albumFrequenciesByWord.computeIfAbsent(words[j], word -> new HashMap<>()).put(i, wordFrequencies[j]);
+                totals.merge(words[j], wordFrequencies[j], Integer::sum);
+            }
+            albums[i] = new Album(album.getMusician(), album.getAlbumTitle(), words, wordFrequencies);
+            if (album.getAlbumTitle() != null) {
+                albumsByTitle.putIfAbsent(normalize(album.getAlbumTitle()), i);
+            }
+        }
+
+        for (Map.Entry<String, Map<Integer, Integer>> word : albumFrequenciesByWord.entrySet()) {
+            List<Map.Entry<Integer, Integer>> sorted = sortByFrequency(word.getValue());
+            int[] albumIndices = new int[sorted.size()];
+            int[] frequencies = new int[sorted.size()];
+            for (int j = 0; j < sorted.size(); j++) {
+                albumIndices[j] = sorted.get(j).getKey();
+                frequencies[j] = sorted.get(j).getValue();
+            }
+            occurrencesByWord.put(word.getKey(), new Occurrences(albumIndices, frequencies));
+        }
+
+        List<Map.Entry<String, Integer>> sortedTotals = sortByFrequency(totals);
+        totalWords = new String[sortedTotals.size()];
+        totalFrequencies = new int[sortedTotals.size()];
+        for (int j = 0; j < sortedTotals.size(); j++) {
+            totalWords[j] = sortedTotals.get(j).getKey();
+            totalFrequencies[j] = sortedTotals.get(j).getValue();
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Sorts entries by frequency (descending) and then by key, so the order doesn't depend on hashing.
+     */
+    private static <K extends Comparable<K>> List<Map.Entry<K, Integer>> sortByFrequency(Map<K, Integer> frequencies) {
+        List<Map.Entry<K, Integer>> sorted = new ArrayList<>(frequencies.entrySet());
+        sorted.sort(Map.Entry.<K, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return sorted;
+    }
+
+    private static WordsFrequencies.WordFrequency[] topWords(String[] words, int[] frequencies, int k) {
+        WordsFrequencies.WordFrequency[] result = new WordsFrequencies.WordFrequency[Math.min(k, words.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new WordsFrequencies.WordFrequency(words[i], frequencies[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most frequent words of the album.
+     * @param albumTitle    Title of the album.
+     * @param k             Maximal number of words.
+     * @return Words frequencies of the album, the most frequent first, or null, if there's no such album.
+     */
+    public WordsFrequencies getTopWords(String albumTitle, int k) {
+        Integer index = albumsByTitle.get(normalize(albumTitle));
+        if (index == null) {
+            return null;
+        }
+        Album album = albums[index];
+        return new WordsFrequencies(album.musician, album.title, topWords(album.words, album.frequencies, k));
+    }
+
+    /**
+     * Returns the most frequent words of every album.
+     * @param k     Maximal number of words for every album.
+     * @return Words frequencies of all albums in the original order.
+     */
+    public List<WordsFrequencies> getTopWords(int k) {
+        List<WordsFrequencies> result = new ArrayList<>(albums.length);
+        for (Album album : albums) {
+            result.add(new WordsFrequencies(album.musician, album.title, topWords(album.words, album.frequencies, k)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most frequent words of all albums together.
+     * @param k     Maximal number of words.
+     * @return Words with their total frequencies, the most frequent first.
+     */
+    public WordsFrequencies.WordFrequency[] getTopWordsOfAllAlbums(int k) {
+        return topWords(totalWords, totalFrequencies, k);
+    }
+
+    /**
+     * Returns albums, which contain the word.
+     * @param word  The word.
+     * @return Albums with frequencies of the word, the most frequent first.
+     */
+    public List<AlbumFrequency> getAlbums(String word) {
+        Occurrences occurrences = occurrencesByWord.get(normalize(word));
+        if (occurrences == null) {
+            return Collections.emptyList();
+        }
+        List<AlbumFrequency> result = new ArrayList<>(occurrences.albums.length);
+        for (int i = 0; i < occurrences.albums.length; i++) {
+            Album album = albums[occurrences.albums[i]];
+            result.add(new AlbumFrequency(album.musician, album.title, occurrences.frequencies[i]));
+        }
+        return result;
+    }
+}
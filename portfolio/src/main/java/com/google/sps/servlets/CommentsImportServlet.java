@@ -0,0 +1,92 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.sps.data.Comments;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that imports comments from other systems. The request body is JSON lines,
+ * each line is a comment, e.g. {"date": "2020-06-01T10:00:00Z", "text": "Hi!", "authorID": "42", "rating": 3}.
+ * The response is JSON with numbers of imported, failed and invalid comments, which is sent after the whole import
+ * (App Engine buffers the response, so progress can't be streamed). Comments are shared with CommentsServlet,
+ * which is loaded earlier. Only administrators are allowed to import comments.
+ */
+@WebServlet(urlPatterns = "/comments/import", loadOnStartup = 2)
+public class CommentsImportServlet extends HttpServlet {
+    private Comments comments;
+    private final Gson gson = new Gson();
+
+    @Override
+    public void init() {
+        comments = (Comments) getServletContext().getAttribute(CommentsServlet.COMMENTS_ATTRIBUTE);
+    }
+
+    /**
+     * Post method, which reads comments from the request body and puts them to the datastore in batches.
+     */
+    @Override
+    public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        UserService userService = UserServiceFactory.getUserService();
+        if (!userService.isUserLoggedIn()) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "User needs to authorize, before importing comments");
+            return;
+        }
+        if (!userService.isUserAdmin()) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only administrators are allowed to import comments");
+            return;
+        }
+
+        response.setContentType("application/json");
+        BufferedReader reader = request.getReader();
+        List<Comments.Comment> batch = new ArrayList<>(Comments.MAX_BATCH_PUT_SIZE);
+        int imported = 0;
+        int failed = 0;
+        int invalid = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Comments.Comment comment;
+            try {
+                comment = gson.fromJson(line, Comments.Comment.class);
+            } catch (JsonParseException e) {
+                comment = null;
+            }
+            if (comment == null || comment.getDate() == null || comment.getText() == null) {
+                invalid++;
+                continue;
+            }
+
+            batch.add(comment);
+            if (batch.size() == Comments.MAX_BATCH_PUT_SIZE) {
+                int added = comments.addComments(batch);
+                imported += added;
+                failed += batch.size() - added;
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            int added = comments.addComments(batch);
+            imported += added;
+            failed += batch.size() - added;
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("imported", imported);
+        result.put("failed", failed);
+        result.put("invalid", invalid);
+        response.getWriter().print(gson.toJson(result));
+    }
+}
@@ -14,14 +14,23 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
 import com.google.appengine.repackaged.com.google.common.annotations.VisibleForTesting;
 import com.google.sps.data.Comments;
+import com.google.sps.data.JsonResponseCache;
+import com.google.sps.data.RateLimiter;
+import com.google.sps.data.VoteLedger;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.google.sps.data.UserManager;
 import java.io.IOException;
 import java.sql.Date;
 import java.time.Clock;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -30,12 +39,32 @@ import javax.servlet.http.HttpServletResponse;
 /**
  * Servlet that returns, adds and votes comments
  */
-@WebServlet("/comments")
+@WebServlet(urlPatterns = {"/comments", CommentsServlet.SEARCH_PATH,
+        CommentsServlet.MATERIALIZE_PATH}, loadOnStartup = 1)
 public class CommentsServlet extends HttpServlet {
+    static final String SEARCH_PATH = "/comments/search";
+    /** Name of the servlet context's attribute with Comments, which are shared with CommentsImportServlet. */
+    static final String COMMENTS_ATTRIBUTE = Comments.class.getName();
+    /** Path, which is requested by the cron job (see cron.xml) to recalculate ratings of voted comments. */
+    static final String MATERIALIZE_PATH = "/comments/materialize";
+    /** Header, which App Engine sets for cron requests and removes from requests of users. */
+    private static final String CRON_HEADER = "X-Appengine-Cron";
+    /** Maximal number of actions with comments, which one user can make at once. */
+    static final int ACTIONS_BURST = 10;
+    /** Number of actions with comments per second, which one user can make in the long run. */
+    private static final double ACTIONS_PER_SECOND = 1;
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    /** Listings change often, so clients must revalidate them with ETag every time. */
+    private static final String NO_CACHE = "no-cache";
+    private RateLimiter actionsLimiter;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
     private Clock clock;
-    private enum Actions { ADD, DELETE, VOTE }
+    enum Actions { ADD, DELETE, VOTE }
     private Comments comments;
+    private JsonResponseCache responseCache;
     private final Gson gson = new Gson();
+    /** Number of comments, after which the streamed response is flushed to the client. */
+    private static final int STREAM_FLUSH_PERIOD = 100;
 
     public CommentsServlet() {
         this(Clock.systemUTC());
@@ -45,20 +74,54 @@ public class CommentsServlet extends HttpServlet {
     CommentsServlet(Clock clock) {
         super();
         this.clock = clock;
+        this.actionsLimiter = new RateLimiter(clock, ACTIONS_BURST, ACTIONS_PER_SECOND);
     }
 
     @Override
     public void init() {
-        comments = new Comments();
+        comments = new Comments(clock);
+        // one instance of Comments keeps local caches and the search index consistent with imported comments
+        getServletContext().setAttribute(COMMENTS_ATTRIBUTE, comments);
+        responseCache = new JsonResponseCache(clock, Comments.LISTINGS_CACHE_SIZE, Comments.LISTINGS_CACHE_TTL_MILLIS);
+        // the servlet is loaded on startup, so the index is built by the warmup request instead of the first search
+        comments.rebuildSearchIndex();
+    }
+
+    /**
+     * Recalculates ratings of voted comments, so the next instance starts with fresh ratings.
+     * Votes are already stored in the datastore, so nothing is lost if this isn't called.
+     */
+    @Override
+    public void destroy() {
+        comments.materializeRatings();
     }
 
     /**
      * Get method, which sorts the comments based on the 'type' header.
+     * Responses with the numeric 'quantity' are cached already encoded and support ETag.
+     * If parameter 'pageSize' is given, returns one page of comments (see doGetPage).
      */
     @Override
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (MATERIALIZE_PATH.equals(request.getServletPath())) {
+            doMaintenance(request, response);
+            return;
+        }
+        // reads also recalculate ratings, so votes don't wait for the next vote or the cron job
+        comments.materializeRatingsIfDue();
         response.setContentType("application/json");
+        if (SEARCH_PATH.equals(request.getServletPath())) {
+            doSearch(request, response);
+            return;
+        }
+
         String type = request.getParameter("type");
+        String pageSize = request.getParameter("pageSize");
+        if (pageSize != null) {
+            doGetPage(request, response, type, pageSize);
+            return;
+        }
+
         String quantity = request.getParameter("quantity");
         if (type == null || quantity == null) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missed 'type' or/and 'quantity' parameter");
@@ -71,8 +134,8 @@ public class CommentsServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             if ("all".equals(quantity.toLowerCase())) {
                 switch (type) {
-                    case Comments.DATE: response.getWriter().print(gson.toJson(comments.sortByDate())); break;
-                    case Comments.RATING: response.getWriter().print(gson.toJson(comments.sortByRating())); break;
+                    case Comments.DATE: writeComments(comments.streamByDate(), response); break;
+                    case Comments.RATING: writeComments(comments.streamByRating(), response); break;
                     default: response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown value of 'type', it must be 'date' or 'rating'");
                 }
             } else {
@@ -81,15 +144,121 @@ public class CommentsServlet extends HttpServlet {
             return;
         }
 
-        switch (type) {
-            case Comments.DATE: response.getWriter().print(gson.toJson(comments.sortByDate(numberOfComments))); break;
-            case Comments.RATING: response.getWriter().print(gson.toJson(comments.sortByRating(numberOfComments))); break;
-            default: response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown value of 'type', it must be 'date' or 'rating'");
+        if (!Comments.DATE.equals(type) && !Comments.RATING.equals(type)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown value of 'type', it must be 'date' or 'rating'");
+            return;
+        }
+
+        String cacheKey = type + ":" + numberOfComments;
+        long generation = comments.getGeneration();
+        JsonResponseCache.EncodedResponse encodedResponse = responseCache.get(cacheKey, generation);
+        if (encodedResponse != null) {
+            EncodedResponseWriter.write(encodedResponse, NO_CACHE, request, response);
+            return;
         }
+
+        String json = Comments.DATE.equals(type)
+                ? gson.toJson(comments.sortByDate(numberOfComments))
+                : gson.toJson(comments.sortByRating(numberOfComments));
+        EncodedResponseWriter.write(responseCache.put(cacheKey, generation, json), NO_CACHE, request, response);
+    }
+
+    /**
+     * Writes comments to the response as a JSON array one by one, while they are fetched from the datastore,
+     * so the whole list is never kept in memory. The output is the same as gson.toJson of the list.
+     */
+    private void writeComments(Iterable<Map.Entry<Long, Comments.Comment>> commentsToWrite, HttpServletResponse response)
+            throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(response.getWriter());
+        jsonWriter.beginArray();
+        int written = 0;
+        for (Map.Entry<Long, Comments.Comment> comment : commentsToWrite) {
+            gson.toJson(comment, comment.getClass(), jsonWriter);
+            if (++written % STREAM_FLUSH_PERIOD == 0) {
+                // sends the first comments to the client before the query finishes
+                jsonWriter.flush();
+            }
+        }
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+
+    /**
+     * Returns comments, which text contains words from the parameter 'q', the most relevant first.
+     * Optional parameter 'limit' is the maximal number of comments (DEFAULT_SEARCH_LIMIT by default).
+     */
+    private void doSearch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String query = request.getParameter("q");
+        if (query == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missed 'q' parameter");
+            return;
+        }
+
+        int limit = DEFAULT_SEARCH_LIMIT;
+        String limitParameter = request.getParameter("limit");
+        if (limitParameter != null) {
+            try {
+                limit = Integer.parseInt(limitParameter);
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 1 || limit > Comments.MAX_PAGE_SIZE) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Parameter 'limit' must be a number from 1 to " + Comments.MAX_PAGE_SIZE);
+                return;
+            }
+        }
+        response.getWriter().print(gson.toJson(comments.search(query, limit)));
+    }
+
+    /**
+     * Makes the periodic job, which is requested by the cron job (see cron.xml): recalculates ratings
+     * from dirty shards, so ratings are updated even if nobody votes or reads comments.
+     * Only the cron and administrators are allowed to call it.
+     */
+    private void doMaintenance(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        UserService userService = UserServiceFactory.getUserService();
+        boolean isAdmin = userService.isUserLoggedIn() && userService.isUserAdmin();
+        if (!"true".equals(request.getHeader(CRON_HEADER)) && !isAdmin) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only the cron job and administrators are allowed to do it");
+            return;
+        }
+        comments.materializeRatings();
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    /**
+     * Returns one page of sorted comments and the opaque 'nextCursor' token for the next page
+     * (it's null for the last page). The token must be passed as 'cursor' parameter to get the next page.
+     */
+    private void doGetPage(HttpServletRequest request, HttpServletResponse response, String type, String pageSize)
+            throws IOException {
+        if (type == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missed 'type' parameter");
+            return;
+        }
+
+        String cursor = request.getParameter("cursor");
+        Comments.CommentsPage page;
+        try {
+            switch (type) {
+                case Comments.DATE: page = comments.sortByDate(cursor, Integer.parseInt(pageSize)); break;
+                case Comments.RATING: page = comments.sortByRating(cursor, Integer.parseInt(pageSize)); break;
+                default: response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown value of 'type', it must be 'date' or 'rating'"); return;
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is also an IllegalArgumentException
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Parameter 'pageSize' must be a number from 1 to " + Comments.MAX_PAGE_SIZE + " and 'cursor' must be valid");
+            return;
+        }
+        response.getWriter().print(gson.toJson(page));
     }
 
     /**
      * Post method, make the action on the comment, based on the parameter 'action'.
+     * Every user can make up to ACTIONS_BURST actions at once and ACTIONS_PER_SECOND in the long run,
+     * and can vote for every comment only once.
      */
     @Override
     public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -100,6 +269,11 @@ public class CommentsServlet extends HttpServlet {
             return;
         }
 
+        if (!actionsLimiter.tryAcquire(userID)) {
+            response.sendError(SC_TOO_MANY_REQUESTS, "Too many actions with comments, try again later");
+            return;
+        }
+
         final String commentsPage = "/comments.html";
         Actions action;
         try {
@@ -133,29 +307,45 @@ public class CommentsServlet extends HttpServlet {
         switch (action) {
             case VOTE: {
                 String isUpvote = request.getParameter("isUpvote");
-                if ("true".equals(isUpvote)) {
-                    comments.upvoteComment(commentID);
-                } else if ("false".equals(isUpvote)) {
-                    comments.downvoteComment(commentID);
-                } else {
+                if (!"true".equals(isUpvote) && !"false".equals(isUpvote)) {
                     response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter 'isUpvote' isn't boolean or doesn't exist");
                     return;
                 }
+                VoteLedger.VoteResult result;
+                try {
+                    result = "true".equals(isUpvote)
+                            ? comments.upvoteComment(userID, commentID)
+                            : comments.downvoteComment(userID, commentID);
+                } catch (ConcurrentModificationException e) {
+                    response.sendError(HttpServletResponse.SC_CONFLICT, "Comment is voted too often, try again");
+                    return;
+                }
+                if (VoteLedger.VoteResult.NOT_FOUND == result) {
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND, "Comment with this id doesn't exist");
+                    return;
+                }
+                if (VoteLedger.VoteResult.DUPLICATE == result) {
+                    response.sendError(HttpServletResponse.SC_CONFLICT, "User has already voted for this comment");
+                    return;
+                }
                 break;
             }
             case DELETE: {
-                if (!comments.commentExists(commentID)) {
+                Comments.DeleteResult result;
+                try {
+                    result = comments.deleteIfAuthor(commentID, userID);
+                } catch (ConcurrentModificationException e) {
+                    response.sendError(HttpServletResponse.SC_CONFLICT, "Comment was changed during the deletion, try again");
+                    return;
+                }
+                if (Comments.DeleteResult.NOT_FOUND == result) {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND, "Comment with this id doesn't exist");
                     return;
                 }
-
-                String authorID = comments.getCommentAuthorID(commentID);
-                if (!Objects.equals(userID, authorID)) {
+                if (Comments.DeleteResult.FORBIDDEN == result) {
                     response.sendError(HttpServletResponse.SC_FORBIDDEN, "This user isn't allowed to delete the comment, because he isn't the author");
                     return;
                 }
-
-                comments.deleteComment(commentID);
                 break;
             }
             default: response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown value of parameter 'action'"); return;
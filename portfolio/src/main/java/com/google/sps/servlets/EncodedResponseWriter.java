@@ -0,0 +1,99 @@
+package com.google.sps.servlets;
+
+import com.google.sps.data.JsonResponseCache;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Writes already encoded JSON responses with ETag support.
+ */
+final class EncodedResponseWriter {
+    private EncodedResponseWriter() {}
+
+    /**
+     * Writes the encoded response or only 304 status, if the client already has it (checked by ETag).
+     * The response is gzip-compressed, if the client accepts it.
+     * @param encodedResponse   The response.
+     * @param cacheControl      Value of the 'Cache-Control' header.
+     */
+    static void write(JsonResponseCache.EncodedResponse encodedResponse, String cacheControl,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader("ETag", encodedResponse.getETag());
+        response.setHeader("Cache-Control", cacheControl);
+        response.setHeader("Vary", "Accept-Encoding");
+
+        if (isNotModified(request, encodedResponse.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = encodedResponse.getJson();
+        if (isGzipAccepted(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            body = encodedResponse.getGzippedJson();
+        }
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Returns whether one of ETags in the 'If-None-Match' header matches the given one.
+     * ETags are compared weakly, as the header requires, so the 'W/' prefix is ignored, and '*' matches any ETag.
+     * @param eTag  Quoted ETag of the current response.
+     */
+    static boolean isNotModified(HttpServletRequest request, String eTag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = stripWeakPrefix(eTag);
+        for (String token : ifNoneMatch.split(",")) {
+            String candidate = token.trim();
+            if ("*".equals(candidate) || opaqueTag.equals(stripWeakPrefix(candidate))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    /**
+     * Returns whether the 'Accept-Encoding' header allows gzip, i.e. 'gzip' (or 'x-gzip')
+     * is listed with a non-zero quality, or it isn't listed and '*' is listed with a non-zero quality.
+     */
+    static boolean isGzipAccepted(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double wildcardQuality = 0;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+                return quality > 0;
+            }
+            if ("*".equals(coding)) {
+                wildcardQuality = quality;
+            }
+        }
+        return wildcardQuality > 0;
+    }
+}
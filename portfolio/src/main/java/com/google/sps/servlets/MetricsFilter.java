@@ -0,0 +1,67 @@
+package com.google.sps.servlets;
+
+import com.google.sps.data.RequestMetrics;
+
+import javax.servlet.*;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Filter that records latency, response status and number of datastore calls of every request
+ * per route and per action of comments. Metrics are served by MetricsServlet.
+ */
+@WebFilter("/*")
+public class MetricsFilter implements Filter {
+    /** Name of the servlet context's attribute with RequestMetrics. */
+    static final String METRICS_ATTRIBUTE = RequestMetrics.class.getName();
+    private static final String COMMENTS_PATH = "/comments";
+    private RequestMetrics metrics;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        List<String> actions = new ArrayList<>();
+        for (CommentsServlet.Actions action : CommentsServlet.Actions.values()) {
+            actions.add(action.name());
+        }
+        Map<String, Collection<String>> routes = new LinkedHashMap<>();
+        routes.put(COMMENTS_PATH, actions);
+        routes.put(CommentsServlet.SEARCH_PATH, Collections.emptyList());
+        routes.put("/comments/import", Collections.emptyList());
+        routes.put("/words", Collections.emptyList());
+        routes.put("/shawarma", Collections.emptyList());
+        routes.put("/auth", Collections.emptyList());
+        routes.put(MetricsServlet.METRICS_PATH, Collections.emptyList());
+        metrics = new RequestMetrics(routes);
+        filterConfig.getServletContext().setAttribute(METRICS_ATTRIBUTE, metrics);
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        String route = request.getServletPath();
+        String action = RequestMetrics.NO_ACTION;
+        if (COMMENTS_PATH.equals(route) && "POST".equals(request.getMethod())) {
+            String actionParameter = request.getParameter("action");
+            if (actionParameter != null) {
+                action = actionParameter.toUpperCase();
+            }
+        }
+
+        long start = System.nanoTime();
+        RequestMetrics.startRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            metrics.record(route, action, response.getStatus(), (System.nanoTime() - start) / 1000,
+                    RequestMetrics.getDatastoreCalls());
+        }
+    }
+
+    @Override
+    public void destroy() {}
+}
@@ -0,0 +1,42 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.RequestMetrics;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Servlet that returns metrics of requests, recorded by MetricsFilter, in the Prometheus text format.
+ * Metrics are available only to administrators of the application.
+ */
+@WebServlet(MetricsServlet.METRICS_PATH)
+public class MetricsServlet extends HttpServlet {
+    static final String METRICS_PATH = "/metrics";
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        UserService userService = UserServiceFactory.getUserService();
+        if (!userService.isUserLoggedIn()) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "User needs to authorize, before reading metrics");
+            return;
+        }
+        if (!userService.isUserAdmin()) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only administrators are allowed to read metrics");
+            return;
+        }
+
+        RequestMetrics metrics = (RequestMetrics) getServletContext().getAttribute(MetricsFilter.METRICS_ATTRIBUTE);
+        if (metrics == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Metrics aren't collected");
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        metrics.writePrometheus(response.getWriter());
+    }
+}
@@ -1,40 +1,252 @@
 package com.google.sps.servlets;
 
+import com.google.appengine.repackaged.com.google.common.annotations.VisibleForTesting;
 import com.google.gson.Gson;
-import com.google.gson.JsonIOException;
-import com.google.gson.JsonSyntaxException;
+import com.google.sps.data.GridClusters;
+import com.google.sps.data.PointsBuffer;
 import com.google.sps.data.ShawarmaPlace;
+import com.google.sps.data.ShawarmaPlacesIndex;
+import com.google.sps.data.StaticJsonDataset;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Servlet that returns a list of shawarma places.
+ * The file is memory-mapped and validated once, and reloaded, if it's changed.
+ * Without parameters, the whole file is returned. Queries:
+ * 'bbox=south,west,north,east' - places in the bounding box (the format of LatLngBounds.toUrlValue());
+ * 'near=latitude,longitude' and optional 'k' - the nearest places, the nearest first;
+ * 'zoom' and optional 'bbox' - clusters of places for the zoom level of the map,
+ * a cluster of one place contains the place.
+ * Clients, which accept 'application/octet-stream', receive places and clusters encoded by PointsBuffer:
+ * places have name and description texts, clusters also have the count of places,
+ * and texts of the only place (empty for clusters of several places).
  */
 @WebServlet("/shawarma")
-public class ShawarmaServlet extends HttpServlet {
-    private final String SHAWARMA_FILE = "shawarma.json";
-    private final Path PATH_SHAWARMA_FILE = Paths.get("WEB-INF", "classes", SHAWARMA_FILE).toAbsolutePath();
+public class ShawarmaServlet extends StaticJsonServlet<ShawarmaPlace[]> {
+    private static final String SHAWARMA_FILE = "shawarma.json";
+    private static final int DEFAULT_NEAREST_PLACES = 10;
+
+    /**
+     * Represents the index, clusters and binary encoding, built from the content of the file.
+     */
+    private static class IndexedContent {
+        private final StaticJsonDataset.Content<ShawarmaPlace[]> content;
+        private final ShawarmaPlacesIndex index;
+        private final GridClusters clusters;
+        private final ByteBuffer encodedPlaces;
+
+        IndexedContent(StaticJsonDataset.Content<ShawarmaPlace[]> content) {
+            this.content = content;
+            this.index = new ShawarmaPlacesIndex(content.getValue());
+            ShawarmaPlace[] places = content.getValue();
+            double[] latitudes = new double[places.length];
+            double[] longitudes = new double[places.length];
+            for (int i = 0; i < places.length; i++) {
+                latitudes[i] = places[i].getLatitude();
+                longitudes[i] = places[i].getLongitude();
+            }
+            this.clusters = new GridClusters(latitudes, longitudes);
+            this.encodedPlaces = encodePlaces(Arrays.asList(places));
+        }
+    }
+
+    /**
+     * Represents the cluster of shawarma places, which is returned as JSON.
+     * This class is only used by GSON with the help of reflection.
+     */
+    private static class PlacesCluster {
+        private final double latitude;
+        private final double longitude;
+        private final int count;
+        /** The only place of the cluster, null for clusters of several places. */
+        private final ShawarmaPlace place;
+
+        PlacesCluster(GridClusters.Cluster cluster, ShawarmaPlace[] places) {
+            this.latitude = cluster.getLatitude();
+            this.longitude = cluster.getLongitude();
+            this.count = cluster.getCount();
+            this.place = cluster.getCount() == 1 ? places[cluster.getPoint()] : null;
+        }
+    }
+
     private final Gson gson = new Gson();
+    private volatile IndexedContent indexedContent;
+
+    public ShawarmaServlet() {
+        this(Paths.get("WEB-INF", "classes", SHAWARMA_FILE).toAbsolutePath());
+    }
+
+    @VisibleForTesting
+    ShawarmaServlet(Path path) {
+        super(path, ShawarmaPlace[].class, "Json file with shawarma places is invalid");
+    }
+
+    /**
+     * Returns the index and clusters of the current content, rebuilding them, if the file was reloaded.
+     */
+    private IndexedContent getIndexedContent(StaticJsonDataset.Content<ShawarmaPlace[]> content) {
+        IndexedContent indexed = indexedContent;
+        if (indexed == null || indexed.content != content) {
+            indexed = new IndexedContent(content);
+            indexedContent = indexed;
+        }
+        return indexed;
+    }
+
+    private static ByteBuffer encodePlaces(List<ShawarmaPlace> places) {
+        double[] latitudes = new double[places.size()];
+        double[] longitudes = new double[places.size()];
+        String[][] texts = new String[2][places.size()];
+        for (int i = 0; i < places.size(); i++) {
+            latitudes[i] = places.get(i).getLatitude();
+            longitudes[i] = places.get(i).getLongitude();
+            texts[0][i] = places.get(i).getName();
+            texts[1][i] = places.get(i).getDescription();
+        }
+        return PointsBuffer.encode(latitudes, longitudes, new int[0][], texts);
+    }
+
+    private static ByteBuffer encodeClusters(List<PlacesCluster> clusters) {
+        double[] latitudes = new double[clusters.size()];
+        double[] longitudes = new double[clusters.size()];
+        int[][] counts = new int[1][clusters.size()];
+        String[][] texts = new String[2][clusters.size()];
+        for (int i = 0; i < clusters.size(); i++) {
+            PlacesCluster cluster = clusters.get(i);
+            latitudes[i] = cluster.latitude;
+            longitudes[i] = cluster.longitude;
+            counts[0][i] = cluster.count;
+            if (cluster.place != null) {
+                texts[0][i] = cluster.place.getName();
+                texts[1][i] = cluster.place.getDescription();
+            }
+        }
+        return PointsBuffer.encode(latitudes, longitudes, counts, texts);
+    }
+
+    /**
+     * Parses comma-separated coordinates.
+     * @return Coordinates or null, if their number is different or any of them isn't a valid number.
+     */
+    private static double[] parseCoordinates(String value, int number) {
+        String[] parts = value.split(",", -1);
+        if (parts.length != number) {
+            return null;
+        }
+        double[] coordinates = new double[number];
+        for (int i = 0; i < number; i++) {
+            try {
+                coordinates[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (Double.isNaN(coordinates[i]) || Math.abs(coordinates[i]) > (i % 2 == 0 ? 90 : 180)) {
+                return null;
+            }
+        }
+        return coordinates;
+    }
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
+        String bbox = request.getParameter("bbox");
+        String near = request.getParameter("near");
+        String zoomLevel = request.getParameter("zoom");
+        boolean isBinary = isBinaryAccepted(request);
+        if (bbox == null && near == null && zoomLevel == null) {
+            if (!isBinary) {
+                super.doGet(request, response);
+                return;
+            }
+            StaticJsonDataset.Content<ShawarmaPlace[]> content = getContent(response);
+            if (content != null) {
+                writeBinary(getIndexedContent(content).encodedPlaces, true, response);
+            }
+            return;
+        }
+
+        int zoom = -1;
+        if (zoomLevel != null) {
+            try {
+                zoom = Integer.parseInt(zoomLevel);
+            } catch (NumberFormatException e) {
+                zoom = -1;
+            }
+            if (zoom < 0) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter 'zoom' must be a non-negative number");
+                return;
+            }
+        }
+        double[] box = null;
+        if (bbox != null) {
+            box = parseCoordinates(bbox, 4);
+            if (box == null || box[0] > box[2]) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Parameter 'bbox' must be 'south,west,north,east' with valid coordinates");
+                return;
+            }
+        }
+        double[] point = null;
+        int k = DEFAULT_NEAREST_PLACES;
+        if (box == null && zoomLevel == null) {
+            point = parseCoordinates(near, 2);
+            if (point == null) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Parameter 'near' must be 'latitude,longitude' with valid coordinates");
+                return;
+            }
+            String nearestPlaces = request.getParameter("k");
+            if (nearestPlaces != null) {
+                try {
+                    k = Integer.parseInt(nearestPlaces);
+                } catch (NumberFormatException e) {
+                    k = -1;
+                }
+                if (k < 1) {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter 'k' must be a positive number");
+                    return;
+                }
+            }
+        }
 
-        try (final Reader reader = Files.newBufferedReader(PATH_SHAWARMA_FILE)) {
-            ShawarmaPlace[] shawarmaPlaces = gson.fromJson(reader, ShawarmaPlace[].class);
-            response.getWriter().println(gson.toJson(shawarmaPlaces));
-        } catch (JsonIOException | JsonSyntaxException jsonException){
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                    "Json file with shawarma places is invalid");
-        } catch (Exception e) {
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        StaticJsonDataset.Content<ShawarmaPlace[]> content = getContent(response);
+        if (content == null) {
+            return;
+        }
+        IndexedContent indexed = getIndexedContent(content);
+        if (zoomLevel != null) {
+            List<GridClusters.Cluster> clusters = box != null
+                    ? indexed.clusters.getClusters(zoom, box[0], box[1], box[2], box[3])
+                    : indexed.clusters.getClusters(zoom);
+            List<PlacesCluster> result = new ArrayList<>(clusters.size());
+            for (GridClusters.Cluster cluster : clusters) {
+                result.add(new PlacesCluster(cluster, content.getValue()));
+            }
+            if (isBinary) {
+                writeBinary(encodeClusters(result), false, response);
+            } else {
+                response.setContentType("application/json");
+                response.getWriter().print(gson.toJson(result));
+            }
+            return;
+        }
+        List<ShawarmaPlace> places = box != null
+                ? indexed.index.getPlaces(box[0], box[1], box[2], box[3])
+                : indexed.index.getNearestPlaces(point[0], point[1], k);
+        if (isBinary) {
+            writeBinary(encodePlaces(places), false, response);
+        } else {
+            response.setContentType("application/json");
+            response.getWriter().print(gson.toJson(places));
         }
     }
-}
\ No newline at end of file
+}
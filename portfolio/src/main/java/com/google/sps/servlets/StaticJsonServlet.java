@@ -0,0 +1,185 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.repackaged.com.google.common.annotations.VisibleForTesting;
+import com.google.sps.data.PointsBuffer;
+import com.google.sps.data.StaticJsonDataset;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+
+/**
+ * Base servlet, which returns the static JSON file from the memory-mapped dataset.
+ * Supports ETag, gzip and single byte ranges ('Range: bytes=first-last'), which are served uncompressed.
+ * Subclasses can also return the binary encoding of points to clients, which accept it.
+ * @param <T> Type of the JSON content.
+ */
+abstract class StaticJsonServlet<T> extends HttpServlet {
+    /** Static files don't change often, so clients can use them for a while without revalidation. */
+    private static final String CACHE_CONTROL = "public, max-age=60";
+    private static final String BYTES_UNIT = "bytes=";
+    private static final int SC_RANGE_NOT_SATISFIABLE = 416;
+
+    private final StaticJsonDataset<T> dataset;
+    private final String invalidFileMessage;
+
+    /** Creates the servlet.
+     * @param path                  Path to the JSON file.
+     * @param type                  Type of the JSON content.
+     * @param invalidFileMessage    Error message, which is returned, if the file is invalid.
+     */
+    StaticJsonServlet(Path path, Class<T> type, String invalidFileMessage) {
+        super();
+        this.dataset = new StaticJsonDataset<>(path, type);
+        this.invalidFileMessage = invalidFileMessage;
+    }
+
+    @Override
+    public void init() {
+        dataset.open();
+    }
+
+    @Override
+    public void destroy() {
+        dataset.close();
+    }
+
+    /**
+     * Reloads the file without waiting for the watch service to report its change.
+     */
+    @VisibleForTesting
+    void reload() {
+        dataset.reload();
+    }
+
+    /**
+     * Returns the loaded dataset or sends the error, if it isn't loaded
+     * (404, if the file can't be read, and 500, if it's invalid).
+     * @return Content or null, if the error is sent.
+     */
+    StaticJsonDataset.Content<T> getContent(HttpServletResponse response) throws IOException {
+        StaticJsonDataset.Content<T> content = dataset.getContent();
+        if (content == null) {
+            if (dataset.isInvalid()) {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, invalidFileMessage);
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        }
+        return content;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StaticJsonDataset.Content<T> content = getContent(response);
+        if (content != null) {
+            writeContent(content, request, response);
+        }
+    }
+
+    /**
+     * Writes the whole file, its byte range or only 304 status, if the client already has it (checked by ETag).
+     */
+    void writeContent(StaticJsonDataset.Content<T> content, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setContentType("application/json");
+        response.setHeader("ETag", content.getETag());
+        response.setHeader("Cache-Control", CACHE_CONTROL);
+        response.setHeader("Vary", "Accept, Accept-Encoding");
+        response.setHeader("Accept-Ranges", "bytes");
+
+        if (EncodedResponseWriter.isNotModified(request, content.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(content.getETag()))) {
+            writeRange(content, range, response);
+            return;
+        }
+
+        if (EncodedResponseWriter.isGzipAccepted(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            response.setContentLength(content.getGzippedJson().length);
+            response.getOutputStream().write(content.getGzippedJson());
+            return;
+        }
+        response.setContentLength(content.getLength());
+        Channels.newChannel(response.getOutputStream()).write(content.getJson());
+    }
+
+    /**
+     * Returns whether the client asks for the binary encoding of points instead of JSON.
+     */
+    static boolean isBinaryAccepted(HttpServletRequest request) {
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains(PointsBuffer.CONTENT_TYPE);
+    }
+
+    /**
+     * Writes points, encoded by PointsBuffer.
+     * @param points    Encoded points, the buffer itself isn't modified, so it can be shared between requests.
+     * @param cacheable Whether the response is the whole file, which can be cached like the JSON one.
+     */
+    void writeBinary(ByteBuffer points, boolean cacheable, HttpServletResponse response) throws IOException {
+        response.setContentType(PointsBuffer.CONTENT_TYPE);
+        response.setHeader("Vary", "Accept, Accept-Encoding");
+        if (cacheable) {
+            response.setHeader("Cache-Control", CACHE_CONTROL);
+        }
+        response.setContentLength(points.remaining());
+        Channels.newChannel(response.getOutputStream()).write(points.duplicate());
+    }
+
+    /**
+     * Writes the byte range of the file. Multiple ranges aren't supported, so the whole file is returned for them.
+     */
+    private void writeRange(StaticJsonDataset.Content<T> content, String range, HttpServletResponse response)
+            throws IOException {
+        int length = content.getLength();
+        long first;
+        long last;
+        try {
+            if (!range.startsWith(BYTES_UNIT) || range.contains(",")) {
+                throw new NumberFormatException("Unsupported range " + range);
+            }
+            String[] bounds = range.substring(BYTES_UNIT.length()).trim().split("-", -1);
+            if (bounds.length != 2) {
+                throw new NumberFormatException("Invalid range " + range);
+            }
+            if (bounds[0].isEmpty()) {
+                // suffix range: the last N bytes
+                first = Math.max(0, length - Long.parseLong(bounds[1]));
+                last = length - 1;
+            } else {
+                first = Long.parseLong(bounds[0]);
+                last = bounds[1].isEmpty() ? length - 1 : Math.min(Long.parseLong(bounds[1]), length - 1);
+            }
+        } catch (NumberFormatException e) {
+            response.setContentLength(length);
+            Channels.newChannel(response.getOutputStream()).write(content.getJson());
+            return;
+        }
+
+        if (first < 0 || first > last) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(SC_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", "bytes " + first + "-" + last + "/" + length);
+        response.setContentLength((int) (last - first + 1));
+        ByteBuffer json = content.getJson();
+        // Buffer's methods, because ByteBuffer's covariant overrides don't exist on the java8 runtime
+        ((Buffer) json).position((int) first);
+        ((Buffer) json).limit((int) last + 1);
+        Channels.newChannel(response.getOutputStream()).write(json);
+    }
+}
@@ -1,39 +1,110 @@
 package com.google.sps.servlets;
 
+import com.google.appengine.repackaged.com.google.common.annotations.VisibleForTesting;
 import com.google.gson.Gson;
-import com.google.gson.JsonIOException;
-import com.google.gson.JsonSyntaxException;
+import com.google.sps.data.StaticJsonDataset;
 import com.google.sps.data.WordsFrequencies;
+import com.google.sps.data.WordsFrequenciesIndex;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
  * Servlet that returns words number of appearances for albums.
+ * The file is memory-mapped and validated once, and reloaded, if it's changed.
+ * Without parameters, the whole file is returned. Queries:
+ * 'album' and optional 'top' - the most frequent words of the album;
+ * 'top' - the most frequent words of every album;
+ * 'aggregate=true' and optional 'top' - the most frequent words of all albums together;
+ * 'word' - albums, which contain the word.
  */
 @WebServlet("/words")
-public class WordFrequenciesServlet extends HttpServlet {
-    private final String WORDS_FREQUENCIES_FILE = "wordsFrequencies.json";
-    private final Path PATH_WORDS_FREQUENCIES_FILE = Paths.get("WEB-INF", "classes", WORDS_FREQUENCIES_FILE).toAbsolutePath();
+public class WordFrequenciesServlet extends StaticJsonServlet<WordsFrequencies[]> {
+    private static final String WORDS_FREQUENCIES_FILE = "wordsFrequencies.json";
+
+    /**
+     * Represents the index, built from the content of the file.
+     */
+    private static class IndexedContent {
+        private final StaticJsonDataset.Content<WordsFrequencies[]> content;
+        private final WordsFrequenciesIndex index;
+
+        IndexedContent(StaticJsonDataset.Content<WordsFrequencies[]> content) {
+            this.content = content;
+            this.index = new WordsFrequenciesIndex(content.getValue());
+        }
+    }
+
     private final Gson gson = new Gson();
+    private volatile IndexedContent indexedContent;
+
+    public WordFrequenciesServlet() {
+        this(Paths.get("WEB-INF", "classes", WORDS_FREQUENCIES_FILE).toAbsolutePath());
+    }
+
+    @VisibleForTesting
+    WordFrequenciesServlet(Path path) {
+        super(path, WordsFrequencies[].class, "Json file with words frequencies is invalid");
+    }
+
+    /**
+     * Returns the index of the current content, rebuilding it, if the file was reloaded.
+     */
+    private WordsFrequenciesIndex getIndex(StaticJsonDataset.Content<WordsFrequencies[]> content) {
+        IndexedContent indexed = indexedContent;
+        if (indexed == null || indexed.content != content) {
+            indexed = new IndexedContent(content);
+            indexedContent = indexed;
+        }
+        return indexed.index;
+    }
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String album = request.getParameter("album");
+        String word = request.getParameter("word");
+        String top = request.getParameter("top");
+        boolean aggregate = "true".equals(request.getParameter("aggregate"));
+        if (album == null && word == null && top == null && !aggregate) {
+            super.doGet(request, response);
+            return;
+        }
+
+        int k = Integer.MAX_VALUE;
+        if (top != null) {
+            try {
+                k = Integer.parseInt(top);
+            } catch (NumberFormatException e) {
+                k = -1;
+            }
+            if (k < 1) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter 'top' must be a positive number");
+                return;
+            }
+        }
+
+        StaticJsonDataset.Content<WordsFrequencies[]> content = getContent(response);
+        if (content == null) {
+            return;
+        }
+        WordsFrequenciesIndex index = getIndex(content);
         response.setContentType("application/json");
-        try (final Reader reader = Files.newBufferedReader(PATH_WORDS_FREQUENCIES_FILE)) {
-            WordsFrequencies[] wordsFrequencies = gson.fromJson(reader, WordsFrequencies[].class);
-            response.getWriter().println(gson.toJson(wordsFrequencies));
-        } catch (JsonIOException | JsonSyntaxException e2) {
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                    "Json file with words frequencies is invalid");
-        } catch (Exception e) {
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        if (word != null) {
+            response.getWriter().print(gson.toJson(index.getAlbums(word)));
+        } else if (album != null) {
+            WordsFrequencies albumWords = index.getTopWords(album, k);
+            if (albumWords == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "Album with this title doesn't exist");
+                return;
+            }
+            response.getWriter().print(gson.toJson(albumWords));
+        } else if (aggregate) {
+            response.getWriter().print(gson.toJson(index.getTopWordsOfAllAlbums(k)));
+        } else {
+            response.getWriter().print(gson.toJson(index.getTopWords(k)));
         }
     }
-}
\ No newline at end of file
+}
@@ -5,29 +5,101 @@ const currentUserIDItemName = 'currentUserID';
 var selectedSortType = localStorage.getItem(sortItemName, selectedSortType);
 var selectedQuantityOfComments = localStorage.getItem(quantityItemName, selectedQuantityOfComments);
 
+const commentsPageSize = 50;
+const commentsRefreshIntervalMillis = 30000;
+/** ETag of the shown listing of comments, it's null, if all comments are shown. */
+var shownCommentsETag = null;
+
+/**
+ * Creates the URL of the listing of first 'quantity' comments, sorted according to the 'type'.
+ * @param  {string}  type      type for sorting comments ('date' or 'rating')
+ * @param  {string}  quantity  number of comments to return
+ */
+function createCommentsUrl(type, quantity) {
+    var url = new URL(window.location.protocol + "//" + window.location.host + '/comments');
+    var params = new URLSearchParams();
+    params.append('type', type);
+    params.append('quantity', quantity);
+    url.search = params.toString();
+    return url;
+}
+
 /**
  * Adds first 'quantity' comments, sorted according to the 'type', to the list '.comments'
  * @param  {string}  type      type for sorting comments ('date' or 'rating'), if it's unknown type, then 'date' by default
  * @param  {string}  quantity  number of comments to return (it's a string representation of number or 'all')
  */
 function getComments(type, quantity) {
+    const listOfCommentsDOM = document.querySelector('.comments-list');
+    listOfCommentsDOM.innerHTML = '';
+    shownCommentsETag = null;
+    if (quantity === 'all') {
+        getCommentsPage(type, null);
+        return;
+    }
+
+    fetch(createCommentsUrl(type, quantity), {method: 'GET'}).then((response) => {
+        shownCommentsETag = response.headers.get('ETag');
+        return response.json();
+    }).then((comments) => {
+        appendComments(comments);
+    });
+}
+
+/**
+ * Reloads the shown listing of comments, if it was changed. The server revalidates the listing with its ETag,
+ * so the unchanged listing costs only 304. Listings of all comments aren't refreshed, they are too large.
+ */
+function refreshComments() {
+    if (document.hidden || shownCommentsETag == null) return;
+    const type = selectedSortType;
+    const quantity = selectedQuantityOfComments;
+    fetch(createCommentsUrl(type, quantity), {method: 'GET'}).then((response) => {
+        const eTag = response.headers.get('ETag');
+        if (!response.ok || eTag === shownCommentsETag) return;
+        return response.json().then((comments) => {
+            // the listing could be switched, while it was loaded
+            if (type !== selectedSortType || quantity !== selectedQuantityOfComments) return;
+            document.querySelector('.comments-list').innerHTML = '';
+            shownCommentsETag = eTag;
+            appendComments(comments);
+        });
+    });
+}
+
+/**
+ * Adds the page of comments, sorted according to the 'type', to the list '.comments'
+ * and then requests the next page, until all comments are loaded.
+ * @param  {string}  type    type for sorting comments ('date' or 'rating')
+ * @param  {string}  cursor  token of the page, returned with the previous page, or null for the first page
+ */
+function getCommentsPage(type, cursor) {
     var url = new URL(window.location.protocol + "//" + window.location.host + '/comments');
     var params = new URLSearchParams();
     params.append('type', type);
-    params.append('quantity', quantity);
+    params.append('pageSize', commentsPageSize);
+    if (cursor != null) params.append('cursor', cursor);
     url.search = params.toString();
-    fetch(url, {method: 'GET'}).then(response => response.json()).then((comments) => {
-        const currentUserID = localStorage.getItem(currentUserIDItemName);
-        const listOfCommentsDOM = document.querySelector('.comments-list');
-        listOfCommentsDOM.innerHTML = '';
-        for (var i = 0; i < comments.length; i++) {
-            const comment = comments[i];
-            listOfCommentsDOM.appendChild(
-                createListElement(comment.value, comment.key, currentUserID));
-        }
+    fetch(url, {method: 'GET'}).then(response => response.json()).then((page) => {
+        appendComments(page.comments);
+        if (page.nextCursor != null) getCommentsPage(type, page.nextCursor);
     });
 }
 
+/**
+ * Appends comments to the list '.comments'
+ * @param  {Array}  comments  list of pairs {key: comment id, value: comment}
+ */
+function appendComments(comments) {
+    const currentUserID = localStorage.getItem(currentUserIDItemName);
+    const listOfCommentsDOM = document.querySelector('.comments-list');
+    for (var i = 0; i < comments.length; i++) {
+        const comment = comments[i];
+        listOfCommentsDOM.appendChild(
+            createListElement(comment.value, comment.key, currentUserID));
+    }
+}
+
 /**
  * Upvotes/Downvotes comment with the given ID
  * @param  {boolean}  isUpvote  true if we want to upvote and false if not
@@ -77,6 +149,7 @@ if (selectedSortType == null) selectedSortType = 'date';
 if (selectedQuantityOfComments == null) selectedQuantityOfComments = 'all';
 
 getComments(selectedSortType, selectedQuantityOfComments);
+setInterval(refreshComments, commentsRefreshIntervalMillis);
 
 /** Creates an <li class="comment"> element.
  * @param  {Object} comment       comment
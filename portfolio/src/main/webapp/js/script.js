@@ -52,11 +52,14 @@ function makeChangeDescriptionCallBack(projectIndex) {
     }
 }
 
+/** Maximal number of words in the chart of every album. */
+const chartWordsNumber = 10;
+
 /**
  * Draws charts for words frequencies.
  */
 function drawCharts() {
-    fetch('/words', {method: 'GET'}).then(response => response.json()).then((wordsArray) => {
+    fetch('/words?top=' + chartWordsNumber, {method: 'GET'}).then(response => response.json()).then((wordsArray) => {
         const chartsDOM = document.querySelector('.charts-divs');
         var index = 0;
         wordsArray.forEach(album => {
@@ -81,28 +84,109 @@ function drawCharts() {
     })
 }
 
+/** Markers of shawarma places and clusters, which are on the map now. */
+var shawarmaMarkers = [];
+
+/**
+ * Puts a marker of the single shawarma place and adds event listener to show description.
+ */
+function putShawarmaMarker(shawarmaPlace) {
+    const shawarmaMarker = new google.maps.Marker({
+        position: {
+            lat: shawarmaPlace.latitude,
+            lng: shawarmaPlace.longitude
+        },
+        map: map,
+        title: shawarmaPlace.name
+    });
+
+    const shawarmaContent = `
+    <h1>` + shawarmaPlace.name + `</h1>
+    <p>` + shawarmaPlace.description + `</p>`;
+    const infoWindow = new google.maps.InfoWindow({content: shawarmaContent});
+    shawarmaMarker.addListener('click', () => {
+        infoWindow.open(map, shawarmaMarker);
+    });
+    return shawarmaMarker;
+}
+
+/**
+ * Decodes points, encoded by PointsBuffer on the server: little-endian header (count, number of integer columns,
+ * number of text columns), coordinates deltas in millionths of a degree, integer columns, texts lengths and UTF-8 texts.
+ * Typed arrays use the platform byte order, which is little-endian in all browsers.
+ */
+function decodePoints(buffer) {
+    const [count, intColumns, textColumns] = new Uint32Array(buffer, 0, 3);
+    let offset = 3 * 4;
+    const coordinates = new Int32Array(buffer, offset, 2 * count);
+    offset += coordinates.byteLength;
+    const ints = new Int32Array(buffer, offset, intColumns * count);
+    offset += ints.byteLength;
+    const lengths = new Uint32Array(buffer, offset, textColumns * count);
+    offset += lengths.byteLength;
+
+    const points = [];
+    let latitude = 0;
+    let longitude = 0;
+    for (let i = 0; i < count; i++) {
+        latitude += coordinates[2 * i];
+        longitude += coordinates[2 * i + 1];
+        points.push({latitude: latitude / 1e6, longitude: longitude / 1e6, ints: [], texts: []});
+    }
+    for (let column = 0; column < intColumns; column++) {
+        for (let i = 0; i < count; i++) {
+            points[i].ints.push(ints[column * count + i]);
+        }
+    }
+    const bytes = new Uint8Array(buffer);
+    const decoder = new TextDecoder();
+    for (let column = 0; column < textColumns; column++) {
+        for (let i = 0; i < count; i++) {
+            const length = lengths[column * count + i];
+            points[i].texts.push(decoder.decode(bytes.subarray(offset, offset + length)));
+            offset += length;
+        }
+    }
+    return points;
+}
+
 /**
- * Puts shawarma markers and adds event listeners to show description.
+ * Puts markers of visible shawarma places and clusters, which are computed by the server for the current zoom.
+ * Clicking on a cluster zooms the map in.
  */
 function putShawarmaMarkers() {
-    fetch('/shawarma', {method: 'GET'}).then(response => response.json()).then((shawarmaPlaces) => {
-        shawarmaPlaces.forEach(shawarmaPlace => {
-            const shawarmaMarker = new google.maps.Marker({
-                position: {
-                    lat: shawarmaPlace.latitude,
-                    lng: shawarmaPlace.longitude
-                },
+    const bounds = map.getBounds();
+    if (!bounds) {
+        return;
+    }
+    const zoom = map.getZoom();
+    fetch('/shawarma?zoom=' + zoom + '&bbox=' + bounds.toUrlValue(), {
+        method: 'GET',
+        headers: {'Accept': 'application/octet-stream'}
+    }).then(response => response.arrayBuffer()).then((buffer) => {
+        shawarmaMarkers.forEach(marker => marker.setMap(null));
+        shawarmaMarkers = decodePoints(buffer).map(cluster => {
+            const count = cluster.ints[0];
+            if (count === 1) {
+                return putShawarmaMarker({
+                    latitude: cluster.latitude,
+                    longitude: cluster.longitude,
+                    name: cluster.texts[0],
+                    description: cluster.texts[1]
+                });
+            }
+            const position = {lat: cluster.latitude, lng: cluster.longitude};
+            const clusterMarker = new google.maps.Marker({
+                position: position,
                 map: map,
-                title: shawarmaPlace.name
+                label: String(count),
+                title: count + ' shawarma places'
             });
-
-            const shawarmaContent = `
-            <h1>` + shawarmaPlace.name + `</h1>
-            <p>` + shawarmaPlace.description + `</p>`;
-            const infoWindow = new google.maps.InfoWindow({content: shawarmaContent});
-            shawarmaMarker.addListener('click', () => {
-                infoWindow.open(map, shawarmaMarker);
+            clusterMarker.addListener('click', () => {
+                map.setCenter(position);
+                map.setZoom(zoom + 2);
             });
+            return clusterMarker;
         });
     });
 }
@@ -120,8 +204,8 @@ function initMap() {
     zoom: 13
   });
 
-  // Initialize map markers.
-  putShawarmaMarkers();
+  // Put markers of visible places, when the map stops moving.
+  map.addListener('idle', putShawarmaMarkers);
 }
 
 // comment button
@@ -0,0 +1,124 @@
+package com.google.sps.data;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CommentEntityCacheTest {
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig());
+    private final AtomicLong now = new AtomicLong(1000000);
+    private final Clock testClock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now.get());
+        }
+    };
+    private final Comments.Comment comment = new Comments.Comment(new Date(0), "text", "author", 0);
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        CommentEntityCache cache = new CommentEntityCache(testClock, 10, 1000);
+        assertThat(cache.get(1)).isNull();
+        cache.put(1, comment);
+        assertThat(cache.get(1)).isEqualTo(comment);
+
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCommentsExpireAndAreEvicted() {
+        CommentEntityCache cache = new CommentEntityCache(testClock, 2, 1000);
+        cache.put(1, comment);
+        cache.put(2, comment);
+        cache.get(1);
+        cache.put(3, comment);
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(1)).isNotNull();
+
+        now.addAndGet(1000);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(3)).isNull();
+    }
+
+    @Test
+    public void testInvalidation() {
+        CommentEntityCache cache = new CommentEntityCache(testClock, 10, 1000);
+        cache.put(1, comment);
+        cache.put(2, comment);
+
+        cache.updateRating(1, 5);
+        assertThat(cache.get(1)).isEqualTo(comment.withRating(5));
+        cache.remove(1);
+        assertThat(cache.get(1)).isNull();
+        cache.clear();
+        assertThat(cache.get(2)).isNull();
+    }
+
+    @Test
+    public void testPagesAreFetchedThroughCache() {
+        Comments comments = new Comments(testClock);
+        assertThat(comments.sortByDate(null, 2).getComments()).isEmpty();
+        comments.addComment("author", "uno", new Date(1));
+        comments.addComment("author", "dos", new Date(2));
+        // comments are cached, when they are added
+        assertThat(comments.sortByDate(null, 2).getComments()).hasSize(2);
+        assertThat(comments.getEntityCache().getHits()).isEqualTo(2);
+        assertThat(comments.getEntityCache().getMisses()).isEqualTo(0);
+
+        comments.getEntityCache().clear();
+        comments.sortByDate(null, 2);
+        List<Map.Entry<Long, Comments.Comment>> page = comments.sortByDate(null, 2).getComments();
+
+        assertThat(page.get(0).getValue().getText()).isEqualTo("dos");
+        assertThat(comments.getEntityCache().getMisses()).isEqualTo(2);
+        assertThat(comments.getEntityCache().getHits()).isEqualTo(4);
+    }
+
+    @Test
+    public void testPageSeesRatingChangedByOtherInstance() {
+        Comments firstInstance = new Comments(testClock);
+        Comments secondInstance = new Comments(testClock);
+        firstInstance.addComment("author", "uno", new Date());
+        long id = firstInstance.sortByDate(null, 1).getComments().get(0).getKey();
+
+        secondInstance.upvoteComment("voter", id);
+        secondInstance.materializeRatings();
+
+        assertThat(firstInstance.sortByDate(null, 1).getComments().get(0).getValue().rating).isEqualTo(1);
+    }
+}
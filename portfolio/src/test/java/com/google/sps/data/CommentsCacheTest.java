@@ -0,0 +1,78 @@
+package com.google.sps.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CommentsCacheTest {
+    private final Clock testClock = Clock.fixed(Instant.parse("2018-08-22T10:00:00Z"), ZoneOffset.UTC);
+    private final Comments.Comment comment = new Comments.Comment(new Date(), "text", "author", 0);
+    private CommentsCache cache;
+    private int loads;
+
+    private ArrayList<Map.Entry<Long, Comments.Comment>> load() {
+        loads++;
+        ArrayList<Map.Entry<Long, Comments.Comment>> result = new ArrayList<>();
+        result.add(new AbstractMap.SimpleEntry<>(1L, comment));
+        result.add(new AbstractMap.SimpleEntry<>(2L, comment));
+        return result;
+    }
+
+    @Before
+    public void setUp() {
+        cache = new CommentsCache(testClock, 2, 1000);
+        loads = 0;
+    }
+
+    @Test
+    public void testReadThrough() {
+        cache.get(Comments.DATE, 2, this::load);
+        cache.get(Comments.DATE, 2, this::load);
+
+        assertThat(loads).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAddedCommentUpdatesDateListing() {
+        cache.get(Comments.DATE, 2, this::load);
+        cache.get(Comments.RATING, 2, this::load);
+        cache.onCommentAdded(3L, comment);
+
+        List<Map.Entry<Long, Comments.Comment>> byDate = cache.get(Comments.DATE, 2, this::load);
+        assertThat(byDate.get(0).getKey()).isEqualTo(3L);
+        assertThat(byDate).hasSize(2);
+        assertThat(loads).isEqualTo(2);
+
+        cache.get(Comments.RATING, 2, this::load);
+        assertThat(loads).isEqualTo(3);
+    }
+
+    @Test
+    public void testDeletedCommentInvalidatesFullListing() {
+        cache.get(Comments.DATE, 2, this::load);
+        cache.get(Comments.DATE, 5, this::load);
+        cache.onCommentDeleted(1L);
+
+        assertThat(cache.get(Comments.DATE, 5, this::load)).hasSize(1);
+        assertThat(loads).isEqualTo(2);
+        cache.get(Comments.DATE, 2, this::load);
+        assertThat(loads).isEqualTo(3);
+    }
+
+    @Test
+    public void testSizeBound() {
+        cache.get(Comments.DATE, 1, this::load);
+        cache.get(Comments.DATE, 2, this::load);
+        cache.get(Comments.DATE, 3, this::load);
+        cache.get(Comments.DATE, 1, this::load);
+
+        assertThat(loads).isEqualTo(4);
+    }
+}
@@ -0,0 +1,76 @@
+package com.google.sps.data;
+
+import org.junit.Test;
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CommentsSearchIndexTest {
+    @Test
+    public void testTokenize() {
+        assertThat(CommentsSearchIndex.tokenize("Hello, World! Привет-мир 42"))
+                .containsExactly("hello", "world", "привет", "мир", "42").inOrder();
+    }
+
+    @Test
+    public void testRankedSearch() {
+        CommentsSearchIndex index = new CommentsSearchIndex();
+        index.add(1, "shawarma is tasty");
+        index.add(2, "shawarma, shawarma and more shawarma");
+        index.add(3, "nothing relevant here");
+
+        assertThat(index.search("Shawarma", 10)).containsExactly(2L, 1L).inOrder();
+        assertThat(index.search("shawarma", 1)).containsExactly(2L);
+        assertThat(index.search("pizza", 10)).isEmpty();
+    }
+
+    @Test
+    public void testRemove() {
+        CommentsSearchIndex index = new CommentsSearchIndex();
+        index.add(1, "tasty shawarma");
+        index.add(2, "tasty belyash");
+        index.remove(1);
+
+        assertThat(index.search("tasty shawarma", 10)).isEqualTo(Arrays.asList(2L));
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRemovedCommentIsNotFoundBeforeAndAfterCompaction() {
+        CommentsSearchIndex index = new CommentsSearchIndex();
+        index.add(1, "tasty shawarma");
+        index.add(2, "shawarma");
+        index.remove(1);
+
+        assertThat(index.contains(1)).isFalse();
+        assertThat(index.search("tasty", 10)).isEmpty();
+        index.compact();
+        assertThat(index.search("tasty shawarma", 10)).isEqualTo(Arrays.asList(2L));
+    }
+
+    @Test
+    public void testReaddedCommentHasOnlyNewTerms() {
+        CommentsSearchIndex index = new CommentsSearchIndex();
+        index.add(1, "tasty shawarma");
+        index.remove(1);
+        index.add(1, "shawarma shawarma");
+
+        assertThat(index.search("tasty", 10)).isEmpty();
+        assertThat(index.search("shawarma", 10)).isEqualTo(Arrays.asList(1L));
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testManyRemovals() {
+        CommentsSearchIndex index = new CommentsSearchIndex();
+        for (long id = 0; id < 5000; id++) {
+            index.add(id, "common word" + id);
+        }
+        for (long id = 0; id < 4990; id++) {
+            index.remove(id);
+        }
+
+        assertThat(index.search("common", 100)).hasSize(10);
+        assertThat(index.search("word4995", 10)).isEqualTo(Arrays.asList(4995L));
+    }
+}
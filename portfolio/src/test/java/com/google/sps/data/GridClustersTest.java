@@ -0,0 +1,64 @@
+package com.google.sps.data;
+
+import org.junit.Test;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GridClustersTest {
+    private static int getTotalCount(List<GridClusters.Cluster> clusters) {
+        int count = 0;
+        for (GridClusters.Cluster cluster : clusters) {
+            count += cluster.getCount();
+        }
+        return count;
+    }
+
+    @Test
+    public void testEveryLevelContainsAllPoints() {
+        Random random = new Random(42);
+        double[] latitudes = new double[5000];
+        double[] longitudes = new double[5000];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = 32 + random.nextDouble() * 10;
+            longitudes[i] = -124 + random.nextDouble() * 10;
+        }
+        GridClusters clusters = new GridClusters(latitudes, longitudes);
+
+        int previousSize = 0;
+        for (int zoom = 0; zoom <= GridClusters.MAX_ZOOM; zoom++) {
+            List<GridClusters.Cluster> level = clusters.getClusters(zoom);
+            assertThat(getTotalCount(level)).isEqualTo(latitudes.length);
+            assertThat(level.size()).isAtLeast(previousSize);
+            previousSize = level.size();
+        }
+        assertThat(clusters.getClusters(0)).hasSize(1);
+        assertThat(clusters.getClusters(GridClusters.MAX_ZOOM)).hasSize(latitudes.length);
+    }
+
+    @Test
+    public void testCentroid() {
+        GridClusters clusters = new GridClusters(new double[] {59.93, 59.94, -33.9}, new double[] {30.3, 30.32, 151.2});
+
+        List<GridClusters.Cluster> level = clusters.getClusters(3);
+
+        assertThat(level).hasSize(2);
+        GridClusters.Cluster cluster = level.get(0).getCount() == 2 ? level.get(0) : level.get(1);
+        assertThat(cluster.getLatitude()).isWithin(1e-9).of(59.935);
+        assertThat(cluster.getLongitude()).isWithin(1e-9).of(30.31);
+    }
+
+    @Test
+    public void testClustersInBoundingBox() {
+        GridClusters clusters = new GridClusters(
+                new double[] {59.93, 59.94, 55.75, 0}, new double[] {30.3, 30.32, 37.62, 179.9});
+
+        List<GridClusters.Cluster> level = clusters.getClusters(10, 59.8, 30.1, 60, 30.5);
+        assertThat(getTotalCount(level)).isEqualTo(2);
+
+        List<GridClusters.Cluster> antimeridian = clusters.getClusters(10, -1, 179, 1, -179);
+        assertThat(antimeridian).hasSize(1);
+        assertThat(antimeridian.get(0).getPoint()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,47 @@
+package com.google.sps.data;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount()).isEqualTo(0);
+        assertThat(histogram.getQuantileMicros(0.99)).isEqualTo(0);
+    }
+
+    @Test
+    public void testQuantilesHaveBoundedError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100000; micros++) {
+            histogram.record(micros);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(100000);
+        assertThat(histogram.getSumMicros()).isEqualTo(100000L * 100001 / 2);
+        assertThat((double) histogram.getQuantileMicros(0.5)).isWithin(50000 / 8.0).of(50000);
+        assertThat((double) histogram.getQuantileMicros(0.99)).isWithin(99000 / 8.0).of(99000);
+        assertThat(histogram.getQuantileMicros(0.99)).isAtLeast(99000);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(5);
+
+        assertThat(histogram.getQuantileMicros(0.5)).isEqualTo(4);
+        assertThat(histogram.getQuantileMicros(1)).isEqualTo(6);
+    }
+
+    @Test
+    public void testHugeValuesAreRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE / 2);
+
+        assertThat(histogram.getQuantileMicros(1)).isGreaterThan(0L);
+    }
+}
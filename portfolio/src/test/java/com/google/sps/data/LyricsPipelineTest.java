@@ -0,0 +1,125 @@
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LyricsPipelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ForkJoinPool pool;
+    private LyricsPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+        pipeline = new LyricsPipeline(pool, 2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private Path album(String name, String... songs) throws IOException {
+        Path directory = folder.getRoot().toPath().resolve(name);
+        Files.createDirectories(directory);
+        for (int i = 0; i < songs.length; i++) {
+            Files.write(directory.resolve("song" + i + ".txt"), songs[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return directory;
+    }
+
+    @Test
+    public void testLineIsNormalized() {
+        WordCounter counter = new WordCounter();
+
+        LyricsPipeline.countLine("Money, it's a GAS! Grab that cash... money’s 'money'", counter);
+
+        assertThat(counter.get("money")).isEqualTo(2);
+        assertThat(counter.get("money's")).isEqualTo(1);
+        assertThat(counter.get("gas")).isEqualTo(1);
+        assertThat(counter.get("grab")).isEqualTo(1);
+        assertThat(counter.get("cash")).isEqualTo(1);
+        assertThat(counter.get("it's")).isEqualTo(0);
+        assertThat(counter.get("that")).isEqualTo(0);
+        assertThat(counter.size()).isEqualTo(5);
+    }
+
+    @Test
+    public void testCountersAreMerged() {
+        WordCounter first = new WordCounter();
+        WordCounter second = new WordCounter();
+        for (int i = 0; i < 1000; i++) {
+            first.add("word" + i);
+            second.add("word" + (i % 10), 2);
+        }
+
+        first.merge(second);
+
+        assertThat(first.size()).isEqualTo(1000);
+        assertThat(first.get("word3")).isEqualTo(201);
+        assertThat(first.get("word999")).isEqualTo(1);
+        assertThat(first.top(2)[0].getWord()).isEqualTo("word0");
+        assertThat(first.top(2)[1].getWord()).isEqualTo("word1");
+    }
+
+    @Test
+    public void testAlbumsAreCountedInParallel() throws IOException {
+        String[] songs = new String[20];
+        Arrays.fill(songs, "Time time\nBreathe, breathe in the air\nmoney");
+        pipeline.addAlbum(album("Pink Floyd - The Dark Side of the Moon", songs));
+
+        WordsFrequencies[] result = pipeline.getWordsFrequencies();
+
+        assertThat(result).hasLength(1);
+        assertThat(result[0].getMusician()).isEqualTo("Pink Floyd");
+        assertThat(result[0].getAlbumTitle()).isEqualTo("The Dark Side of the Moon");
+        assertThat(result[0].getWords()).hasLength(2);
+        assertThat(result[0].getWords()[0].getWord()).isEqualTo("breathe");
+        assertThat(result[0].getWords()[0].getFrequency()).isEqualTo(40);
+        assertThat(result[0].getWords()[1].getWord()).isEqualTo("time");
+    }
+
+    @Test
+    public void testNewAlbumIsAddedIncrementally() throws IOException {
+        Path lyrics = folder.getRoot().toPath();
+        Path abbeyRoad = album("The Beatles - Abbey Road", "Here comes the sun", "sun sun");
+        pipeline.addAlbums(lyrics);
+        // if the counted album were read again, its words would change
+        Files.write(abbeyRoad.resolve("song0.txt"), "Come together".getBytes(StandardCharsets.UTF_8));
+        Files.delete(abbeyRoad.resolve("song1.txt"));
+        pipeline.addAlbum(album("Pink Floyd - Animals", "Dogs dogs pigs sheep"));
+        Path output = lyrics.resolve("wordsFrequencies.json");
+
+        pipeline.writeJson(output);
+
+        WordsFrequencies[] result = new Gson().fromJson(
+                new String(Files.readAllBytes(output), StandardCharsets.UTF_8), WordsFrequencies[].class);
+        assertThat(result).hasLength(2);
+        assertThat(result[0].getAlbumTitle()).isEqualTo("Abbey Road");
+        assertThat(result[0].getWords()[0].getWord()).isEqualTo("sun");
+        assertThat(result[0].getWords()[0].getFrequency()).isEqualTo(3);
+        assertThat(result[0].getWords()).hasLength(2);
+        assertThat(result[0].getWords()[1].getWord()).isEqualTo("comes");
+        assertThat(result[1].getAlbumTitle()).isEqualTo("Animals");
+        assertThat(result[1].getWords()[0].getWord()).isEqualTo("dogs");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAlbumWithoutMusician() throws IOException {
+        pipeline.addAlbum(album("Abbey Road", "sun"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.google.sps.data;
+
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PointsBufferTest {
+    @Test
+    public void testEncoding() {
+        ByteBuffer buffer = PointsBuffer.encode(new double[] {59.937184, -33.8688197}, new double[] {30.278314, 151.2092955},
+                new int[][] {{3, 1}}, new String[][] {{"Шаурма", null}});
+
+        assertThat(buffer.order()).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+        assertThat(buffer.getInt()).isEqualTo(2);
+        assertThat(buffer.getInt()).isEqualTo(1);
+        assertThat(buffer.getInt()).isEqualTo(1);
+        int latitude = buffer.getInt();
+        int longitude = buffer.getInt();
+        assertThat(latitude).isEqualTo(59937184);
+        assertThat(longitude).isEqualTo(30278314);
+        assertThat(latitude + buffer.getInt()).isEqualTo(-33868820);
+        assertThat(longitude + buffer.getInt()).isEqualTo(151209296);
+        assertThat(buffer.getInt()).isEqualTo(3);
+        assertThat(buffer.getInt()).isEqualTo(1);
+        int length = buffer.getInt();
+        assertThat(buffer.getInt()).isEqualTo(0);
+        byte[] text = new byte[length];
+        buffer.get(text);
+        assertThat(new String(text, StandardCharsets.UTF_8)).isEqualTo("Шаурма");
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void testLongitudeDeltasDoNotOverflow() {
+        ByteBuffer buffer = PointsBuffer.encode(new double[] {0, 0}, new double[] {-180, 180}, new int[0][], new String[0][]);
+
+        buffer.position(3 * Integer.BYTES + Integer.BYTES);
+        assertThat(buffer.getInt()).isEqualTo(-180000000);
+        buffer.getInt();
+        assertThat(buffer.getInt()).isEqualTo(360000000);
+    }
+}
@@ -0,0 +1,67 @@
+package com.google.sps.data;
+
+import org.junit.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RateLimiterTest {
+    private final AtomicLong now = new AtomicLong(1000000);
+    private final Clock testClock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now.get());
+        }
+    };
+
+    @Test
+    public void testBurstIsLimited() {
+        RateLimiter limiter = new RateLimiter(testClock, 3, 1);
+
+        assertThat(limiter.tryAcquire("user")).isTrue();
+        assertThat(limiter.tryAcquire("user")).isTrue();
+        assertThat(limiter.tryAcquire("user")).isTrue();
+        assertThat(limiter.tryAcquire("user")).isFalse();
+        // other users have their own buckets
+        assertThat(limiter.tryAcquire("other")).isTrue();
+    }
+
+    @Test
+    public void testTokensAreRefilled() {
+        RateLimiter limiter = new RateLimiter(testClock, 1, 2);
+
+        assertThat(limiter.tryAcquire("user")).isTrue();
+        assertThat(limiter.tryAcquire("user")).isFalse();
+        now.addAndGet(500);
+        assertThat(limiter.tryAcquire("user")).isTrue();
+        assertThat(limiter.tryAcquire("user")).isFalse();
+    }
+
+    @Test
+    public void testIdleBucketsAreEvicted() {
+        RateLimiter limiter = new RateLimiter(testClock, 2, 1);
+
+        limiter.tryAcquire("idle");
+        now.addAndGet(1000);
+        limiter.tryAcquire("active");
+        assertThat(limiter.size()).isEqualTo(2);
+
+        now.addAndGet(1000);
+        limiter.tryAcquire("active");
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,167 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.*;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Checks sharded counters of ratings and materialization of ratings from them.
+ */
+public class RatingShardsTest {
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig());
+    private final Clock testClock = Clock.fixed(Instant.parse("2020-06-01T10:00:00Z"), ZoneOffset.UTC);
+    private DatastoreService datastore;
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+        datastore = DatastoreServiceFactory.getDatastoreService();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+    }
+
+    private void addToShards(RatingShards shards, long commentID, long delta) {
+        Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+        shards.addToShards(transaction, Collections.singletonMap(commentID, delta));
+        transaction.commit();
+    }
+
+    private long getTotal(RatingShards shards, long commentID) {
+        Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+        try {
+            return shards.getTotal(transaction, commentID);
+        } finally {
+            transaction.rollback();
+        }
+    }
+
+    private Entity putComment(String text, long rating) {
+        Entity comment = new Entity(Comments.COMMENT_ENTITY_KIND);
+        comment.setProperty(Comments.DATE, Date.from(testClock.instant()));
+        comment.setProperty(Comments.TEXT, text);
+        comment.setProperty(Comments.AUTHOR_ID, "author");
+        comment.setProperty(Comments.RATING, rating);
+        datastore.put(comment);
+        return comment;
+    }
+
+    @Test
+    public void testVotesAreWrittenToShards() {
+        RatingShards shards = new RatingShards(datastore);
+        for (int i = 0; i < 10; i++) {
+            addToShards(shards, 42, 1);
+        }
+        addToShards(shards, 42, -3);
+
+        List<Entity> shardEntities = datastore.prepare(new Query(RatingShards.SHARD_ENTITY_KIND))
+                .asList(FetchOptions.Builder.withDefaults());
+        assertThat(shardEntities.size()).isAtMost(RatingShards.NUMBER_OF_SHARDS);
+        long total = 0;
+        for (Entity shard : shardEntities) {
+            assertThat(shard.getKey().getName()).startsWith("42-");
+            total += (long) shard.getProperty(RatingShards.COUNT);
+        }
+        assertThat(total).isEqualTo(7);
+        assertThat(getTotal(shards, 42)).isEqualTo(7);
+    }
+
+    @Test
+    public void testTotalIncludesShardsOfOtherInstances() {
+        RatingShards firstInstance = new RatingShards(datastore);
+        RatingShards secondInstance = new RatingShards(datastore);
+        addToShards(firstInstance, 42, 1);
+        assertThat(getTotal(firstInstance, 42)).isEqualTo(1);
+
+        addToShards(secondInstance, 42, 1);
+        assertThat(getTotal(firstInstance, 42)).isEqualTo(2);
+    }
+
+    @Test
+    public void testOldRatingIsMovedToOffset() throws EntityNotFoundException {
+        Entity comment = putComment("old", 5);
+        Comments comments = new Comments(testClock);
+
+        comments.upvoteComment("voter-1", comment.getKey().getId());
+        comments.materializeRatings();
+
+        Entity updated = datastore.get(comment.getKey());
+        assertThat(updated.getProperty(Comments.RATING_OFFSET)).isEqualTo(5L);
+        assertThat(updated.getProperty(Comments.RATING)).isEqualTo(6L);
+
+        comments.downvoteComment("voter-2", comment.getKey().getId());
+        comments.downvoteComment("voter-3", comment.getKey().getId());
+        comments.materializeRatings();
+
+        updated = datastore.get(comment.getKey());
+        assertThat(updated.getProperty(Comments.RATING_OFFSET)).isEqualTo(5L);
+        assertThat(updated.getProperty(Comments.RATING)).isEqualTo(4L);
+    }
+
+    @Test
+    public void testSortByRatingAfterMaterialization() {
+        Entity first = putComment("first", 0);
+        Entity second = putComment("second", 1);
+        Comments comments = new Comments(testClock);
+        assertThat(comments.sortByRating(2).get(0).getKey()).isEqualTo(second.getKey().getId());
+
+        comments.upvoteComment("voter-4", first.getKey().getId());
+        comments.upvoteComment("voter-5", first.getKey().getId());
+        comments.materializeRatings();
+
+        List<Map.Entry<Long, Comments.Comment>> listing = comments.sortByRating(2);
+        assertThat(listing.get(0).getKey()).isEqualTo(first.getKey().getId());
+        assertThat(listing.get(0).getValue().rating).isEqualTo(2);
+        assertThat(comments.sortByRating().get(0).getKey()).isEqualTo(first.getKey().getId());
+    }
+
+    @Test
+    public void testStaleInstanceDoesNotOverwriteNewerRating() throws EntityNotFoundException {
+        Entity comment = putComment("popular", 0);
+        long id = comment.getKey().getId();
+        Comments firstInstance = new Comments(testClock);
+        Comments secondInstance = new Comments(testClock);
+
+        firstInstance.upvoteComment("voter-6", id);
+        firstInstance.materializeRatings();
+        secondInstance.upvoteComment("voter-7", id);
+        secondInstance.materializeRatings();
+        assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(2L);
+
+        // the first instance hasn't seen the vote of the second one, but the total is read from shards
+        firstInstance.upvoteComment("voter-8", id);
+        firstInstance.materializeRatings();
+        assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(3L);
+    }
+
+    @Test
+    public void testMaterializationCleansShards() throws EntityNotFoundException {
+        Entity comment = putComment("voted", 0);
+        long id = comment.getKey().getId();
+        RatingShards shards = new RatingShards(datastore);
+        addToShards(shards, id, 1);
+        addToShards(shards, id, 1);
+        assertThat(shards.getDirtyCommentIDs(10)).containsExactly(id);
+
+        new Comments(testClock).materializeRatings();
+
+        assertThat(shards.getDirtyCommentIDs(10)).isEmpty();
+        assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,134 @@
+package com.google.sps.data;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Checks that instances of Comments (like different App Engine instances)
+ * see changes of each other through the shared cache.
+ */
+public class SharedCommentsCacheTest {
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig());
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+    }
+
+    @Test
+    public void testChangeByOtherInstanceIsVisible() {
+        Comments firstInstance = new Comments();
+        Comments secondInstance = new Comments();
+
+        firstInstance.addComment("author", "uno", new Date());
+        assertThat(firstInstance.sortByDate(5)).hasSize(1);
+        assertThat(secondInstance.sortByDate(5)).hasSize(1);
+
+        long generation = firstInstance.getGeneration();
+        secondInstance.addComment("author", "dos", new Date());
+
+        assertThat(firstInstance.getGeneration()).isGreaterThan(generation);
+        assertThat(firstInstance.sortByDate(5)).hasSize(2);
+    }
+
+    @Test
+    public void testListingIsSharedBetweenInstances() {
+        Comments firstInstance = new Comments();
+        Comments secondInstance = new Comments();
+
+        firstInstance.addComment("author", "uno", new Date());
+        firstInstance.sortByRating(5);
+        secondInstance.sortByRating(5);
+
+        assertThat(firstInstance.getListingsCache().getMisses()).isEqualTo(1);
+        assertThat(secondInstance.getListingsCache().getMisses()).isEqualTo(1);
+        assertThat(secondInstance.getCommentAuthorID(firstInstance.sortByRating(1).get(0).getKey())).isEqualTo("author");
+    }
+
+    @Test
+    public void testCommentOfOtherInstanceIsSearchable() {
+        AtomicLong now = new AtomicLong(1000000);
+        Clock testClock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now.get());
+            }
+        };
+        Comments firstInstance = new Comments(testClock);
+        Comments secondInstance = new Comments(testClock);
+        firstInstance.addComment("author", "tasty shawarma", new Date());
+        firstInstance.rebuildSearchIndex();
+
+        now.addAndGet(1000);
+        secondInstance.addComment("author", "shawarma again", new Date(0));
+        // the index isn't refreshed more often than SEARCH_INDEX_REFRESH_INTERVAL_MILLIS
+        assertThat(firstInstance.search("shawarma", 10)).hasSize(1);
+
+        now.addAndGet(Comments.SEARCH_INDEX_REFRESH_INTERVAL_MILLIS);
+        assertThat(firstInstance.search("shawarma", 10)).hasSize(2);
+        assertThat(firstInstance.search("again", 10)).hasSize(1);
+    }
+
+    @Test
+    public void testCommentDeletedByOtherInstanceIsDroppedFromIndex() {
+        AtomicLong now = new AtomicLong(1000000);
+        Clock testClock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now.get());
+            }
+        };
+        Comments firstInstance = new Comments(testClock);
+        Comments secondInstance = new Comments(testClock);
+        firstInstance.addComment("author", "tasty shawarma", new Date());
+        firstInstance.rebuildSearchIndex();
+        long id = firstInstance.search("shawarma", 10).get(0).getKey();
+
+        assertThat(secondInstance.deleteIfAuthor(id, "author")).isEqualTo(Comments.DeleteResult.DELETED);
+        // the deleted comment isn't returned, but it's removed from the index only by the next rebuild
+        assertThat(firstInstance.search("shawarma", 10)).isEmpty();
+        assertThat(firstInstance.getSearchIndex().contains(id)).isTrue();
+
+        now.addAndGet(Comments.SEARCH_INDEX_REBUILD_INTERVAL_MILLIS);
+        assertThat(firstInstance.search("shawarma", 10)).isEmpty();
+        assertThat(firstInstance.getSearchIndex().contains(id)).isFalse();
+    }
+}
@@ -0,0 +1,80 @@
+package com.google.sps.data;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ShawarmaPlacesIndexTest {
+    private static ShawarmaPlace[] randomPlaces(int number) {
+        Random random = new Random(42);
+        ShawarmaPlace[] places = new ShawarmaPlace[number];
+        for (int i = 0; i < number; i++) {
+            // rounded coordinates produce equal values, which must be on both sides of splits
+            double latitude = 59.8 + Math.round(random.nextDouble() * 200) / 1000.0;
+            double longitude = 30.1 + Math.round(random.nextDouble() * 400) / 1000.0;
+            places[i] = new ShawarmaPlace(latitude, longitude, "Place " + i, "");
+        }
+        return places;
+    }
+
+    @Test
+    public void testPlacesInBoundingBox() {
+        ShawarmaPlace[] places = randomPlaces(1000);
+        ShawarmaPlacesIndex index = new ShawarmaPlacesIndex(places);
+        List<ShawarmaPlace> expected = new ArrayList<>();
+        for (ShawarmaPlace place : places) {
+            if (place.getLatitude() >= 59.9 && place.getLatitude() <= 59.95
+                    && place.getLongitude() >= 30.25 && place.getLongitude() <= 30.3) {
+                expected.add(place);
+            }
+        }
+
+        List<ShawarmaPlace> result = index.getPlaces(59.9, 30.25, 59.95, 30.3);
+
+        assertThat(expected).isNotEmpty();
+        assertThat(result).containsExactlyElementsIn(expected);
+    }
+
+    @Test
+    public void testBoundingBoxCrossingAntimeridian() {
+        ShawarmaPlace west = new ShawarmaPlace(0, 179.5, "West", "");
+        ShawarmaPlace east = new ShawarmaPlace(0, -179.5, "East", "");
+        ShawarmaPlace far = new ShawarmaPlace(0, 0, "Far", "");
+        ShawarmaPlacesIndex index = new ShawarmaPlacesIndex(new ShawarmaPlace[] {west, east, far});
+
+        assertThat(index.getPlaces(-1, 179, 1, -179)).containsExactly(west, east);
+    }
+
+    @Test
+    public void testNearestPlaces() {
+        ShawarmaPlace[] places = randomPlaces(1000);
+        ShawarmaPlacesIndex index = new ShawarmaPlacesIndex(places);
+        double latitude = 59.93;
+        double longitude = 30.31;
+        Comparator<ShawarmaPlace> byDistance = Comparator.comparingDouble(place -> Math.hypot(
+                place.getLatitude() - latitude, (place.getLongitude() - longitude) * Math.cos(Math.toRadians(latitude))));
+        List<ShawarmaPlace> sorted = new ArrayList<>(Arrays.asList(places));
+        sorted.sort(byDistance);
+
+        List<ShawarmaPlace> result = index.getNearestPlaces(latitude, longitude, 5);
+
+        assertThat(result).hasSize(5);
+        assertThat(result).isInOrder(byDistance);
+        // places at the same distance may be returned in any order, so only the farthest distance is compared
+        assertThat(byDistance.compare(result.get(4), sorted.get(4))).isEqualTo(0);
+        assertThat(byDistance.compare(result.get(4), sorted.get(5))).isAtMost(0);
+    }
+
+    @Test
+    public void testMoreNearestPlacesThanExist() {
+        ShawarmaPlacesIndex index = new ShawarmaPlacesIndex(randomPlaces(3));
+
+        assertThat(index.getNearestPlaces(59.9, 30.3, 10)).hasSize(3);
+        assertThat(new ShawarmaPlacesIndex(new ShawarmaPlace[0]).getNearestPlaces(59.9, 30.3, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,64 @@
+package com.google.sps.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class WordsFrequenciesIndexTest {
+    private WordsFrequenciesIndex index;
+
+    private static WordsFrequencies.WordFrequency word(String word, int frequency) {
+        return new WordsFrequencies.WordFrequency(word, frequency);
+    }
+
+    @Before
+    public void setUp() {
+        index = new WordsFrequenciesIndex(new WordsFrequencies[] {
+                new WordsFrequencies("Pink Floyd", "The Dark Side of the Moon", new WordsFrequencies.WordFrequency[] {
+                        word("time", 6), word("money", 7), word("moon", 4)}),
+                new WordsFrequencies("The Beatles", "Abbey Road", new WordsFrequencies.WordFrequency[] {
+                        word("sun", 26), word("money", 3), word("Sun", 1)})
+        });
+    }
+
+    @Test
+    public void testTopWordsOfAlbum() {
+        WordsFrequencies album = index.getTopWords("the dark side of the moon", 2);
+
+        assertThat(album.getAlbumTitle()).isEqualTo("The Dark Side of the Moon");
+        assertThat(album.getWords()).hasLength(2);
+        assertThat(album.getWords()[0].getWord()).isEqualTo("money");
+        assertThat(album.getWords()[1].getWord()).isEqualTo("time");
+        assertThat(index.getTopWords("Unknown", 2)).isNull();
+    }
+
+    @Test
+    public void testRepeatedWordsAreSummed() {
+        WordsFrequencies album = index.getTopWords("Abbey Road", 10);
+
+        assertThat(album.getWords()).hasLength(2);
+        assertThat(album.getWords()[0].getFrequency()).isEqualTo(27);
+    }
+
+    @Test
+    public void testAlbumsOfWord() {
+        List<WordsFrequenciesIndex.AlbumFrequency> albums = index.getAlbums("Money");
+
+        assertThat(albums).hasSize(2);
+        assertThat(albums.get(0).getAlbumTitle()).isEqualTo("The Dark Side of the Moon");
+        assertThat(albums.get(0).getFrequency()).isEqualTo(7);
+        assertThat(index.getAlbums("unknown")).isEmpty();
+    }
+
+    @Test
+    public void testTopWordsOfAllAlbums() {
+        WordsFrequencies.WordFrequency[] words = index.getTopWordsOfAllAlbums(2);
+
+        assertThat(words).hasLength(2);
+        assertThat(words[0].getWord()).isEqualTo("sun");
+        assertThat(words[1].getWord()).isEqualTo("money");
+        assertThat(words[1].getFrequency()).isEqualTo(10);
+    }
+}
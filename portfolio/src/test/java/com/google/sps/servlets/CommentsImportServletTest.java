@@ -0,0 +1,87 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.*;
+import com.google.sps.data.Comments;
+import org.junit.Test;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CommentsImportServletTest extends ServletTest {
+    private void doPostRequest(String body) throws IOException {
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(body)));
+        // CommentsServlet is loaded on startup and shares its comments with the import
+        initServlet(new CommentsServlet());
+        initServlet(new CommentsImportServlet()).doPost(request, response);
+    }
+
+    @Test
+    public void testImportComments() throws IOException {
+        setUpAdmin();
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        doPostRequest(
+                "{\"date\": \"2020-06-01T10:00:00Z\", \"text\": \"uno\", \"authorID\": \"1\", \"rating\": 3}\n"
+                + "{\"date\": \"2020-06-02T10:00:00Z\", \"text\": \"dos\", \"authorID\": \"2\"}\n"
+                + "\n"
+                + "{\"text\": \"without date\"}\n"
+                + "not a json\n");
+
+        Query query = new Query(Comments.COMMENT_ENTITY_KIND).addSort(Comments.DATE, Query.SortDirection.ASCENDING);
+        List<Entity> results = datastore.prepare(query).asList(FetchOptions.Builder.withDefaults());
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getProperty(Comments.TEXT)).isEqualTo("uno");
+        assertThat(results.get(0).getProperty(Comments.RATING)).isEqualTo(3L);
+        assertThat(results.get(1).getProperty(Comments.AUTHOR_ID)).isEqualTo("2");
+
+        assertThat(getResponseBody()).isEqualTo("{\"imported\":2,\"failed\":0,\"invalid\":2}");
+    }
+
+    @Test
+    public void testImportInManyBatches() throws IOException {
+        setUpAdmin();
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        int numberOfComments = Comments.MAX_BATCH_PUT_SIZE + 1;
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < numberOfComments; i++) {
+            body.append("{\"date\": \"2020-06-01T10:00:00Z\", \"text\": \"").append(i).append("\"}\n");
+        }
+        doPostRequest(body.toString());
+
+        Query query = new Query(Comments.COMMENT_ENTITY_KIND).setKeysOnly();
+        assertThat(datastore.prepare(query).countEntities(FetchOptions.Builder.withDefaults()))
+                .isEqualTo(numberOfComments);
+        assertThat(getResponseBody()).isEqualTo("{\"imported\":" + numberOfComments + ",\"failed\":0,\"invalid\":0}");
+    }
+
+    @Test
+    public void testImportIsForbiddenForOtherUsers() throws IOException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        doPostRequest("{\"date\": \"2020-06-01T10:00:00Z\", \"text\": \"uno\"}\n");
+
+        verify(response).sendError(HttpServletResponse.SC_FORBIDDEN, "Only administrators are allowed to import comments");
+        Query query = new Query(Comments.COMMENT_ENTITY_KIND).setKeysOnly();
+        assertThat(datastore.prepare(query).countEntities(FetchOptions.Builder.withDefaults())).isEqualTo(0);
+    }
+
+    @Test
+    public void testImportedCommentIsSearchable() throws IOException {
+        setUpAdmin();
+        initServlet(new CommentsServlet());
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(
+                "{\"date\": \"2020-06-01T10:00:00Z\", \"text\": \"tasty shawarma\"}\n")));
+        initServlet(new CommentsImportServlet()).doPost(request, response);
+
+        // the index of the shared comments was updated by the import, so it isn't rebuilt
+        Comments comments = (Comments) servletContext.getAttribute(CommentsServlet.COMMENTS_ATTRIBUTE);
+        assertThat(comments.search("shawarma", 10)).hasSize(1);
+    }
+}
@@ -6,6 +6,7 @@ import com.google.appengine.api.datastore.Entity;
 import com.google.gson.Gson;
 import com.google.sps.data.Comments;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -13,6 +14,8 @@ import java.time.Instant;
 import java.util.*;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CommentsServletGetTest extends ServletTest {
@@ -22,7 +25,7 @@ public class CommentsServletGetTest extends ServletTest {
 
     private void doGetRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
         CommentsServlet servlet = new CommentsServlet();
-        servlet.init();
+        initServlet(servlet);
         servlet.doGet(request, response);
     }
 
@@ -40,8 +43,7 @@ public class CommentsServletGetTest extends ServletTest {
         when(request.getParameter("quantity")).thenReturn("all");
 
         doGetRequest(request, response);
-        writer.flush();
-        String result = stringWriter.toString();
+        String result = getResponseBody();
 
         List<Map.Entry<Long, Comments.Comment>> expected =
                 Arrays.asList(new AbstractMap.SimpleEntry(
@@ -87,8 +89,7 @@ public class CommentsServletGetTest extends ServletTest {
         when(request.getParameter("quantity")).thenReturn("3");
 
         doGetRequest(request, response);
-        writer.flush();
-        String result = stringWriter.toString();
+        String result = getResponseBody();
 
         List<Map.Entry<Long, Comments.Comment>> expected =
                 Arrays.asList(
@@ -139,8 +140,7 @@ public class CommentsServletGetTest extends ServletTest {
         when(request.getParameter("quantity")).thenReturn("3");
 
         doGetRequest(request, response);
-        writer.flush();
-        String result = stringWriter.toString();
+        String result = getResponseBody();
 
         List<Map.Entry<Long, Comments.Comment>> expected =
                 Arrays.asList(
@@ -157,4 +157,132 @@ public class CommentsServletGetTest extends ServletTest {
 
         assertThat(result).isEqualTo(gson.toJson(expected));
     }
+
+    @Test
+    public void testCommentsPagination() throws IOException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        Date date = new Date();
+
+        List<Entity> commentEntities = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Entity comment = new Entity(Comments.COMMENT_ENTITY_KIND);
+            comment.setProperty(Comments.TEXT, commentText + i);
+            comment.setProperty(Comments.RATING, 0L);
+            comment.setProperty(Comments.DATE, new Date(date.getTime() - i));
+            datastore.put(comment);
+            commentEntities.add(comment);
+        }
+
+        when(request.getParameter("type")).thenReturn("date");
+        when(request.getParameter("pageSize")).thenReturn("2");
+
+        doGetRequest(request, response);
+        Map<?, ?> firstPage = gson.fromJson(getResponseBody(), Map.class);
+        String cursor = (String) firstPage.get("nextCursor");
+        assertThat((List<?>) firstPage.get("comments")).hasSize(2);
+        assertThat(cursor).isNotNull();
+
+        clearResponseBody();
+        when(request.getParameter("cursor")).thenReturn(cursor);
+
+        doGetRequest(request, response);
+        ArrayList<Map.Entry<Long, Comments.Comment>> expectedComments = new ArrayList<>();
+        expectedComments.add(new AbstractMap.SimpleEntry(
+                commentEntities.get(2).getKey().getId(),
+                Comments.Comment.getCommentFromEntity(commentEntities.get(2))));
+        Comments.CommentsPage expected = new Comments.CommentsPage(expectedComments, null);
+
+        assertThat(getResponseBody()).isEqualTo(gson.toJson(expected));
+    }
+
+    @Test
+    public void testInvalidPageSize() throws IOException {
+        when(request.getParameter("type")).thenReturn("date");
+        when(request.getParameter("pageSize")).thenReturn("0");
+
+        doGetRequest(request, response);
+        verify(response).sendError(
+                HttpServletResponse.SC_BAD_REQUEST,
+                "Parameter 'pageSize' must be a number from 1 to " + Comments.MAX_PAGE_SIZE + " and 'cursor' must be valid");
+    }
+
+    @Test
+    public void testNotModifiedResponse() throws IOException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        Entity commentEntity = new Entity(Comments.COMMENT_ENTITY_KIND);
+        commentEntity.setProperty(Comments.TEXT, commentText);
+        commentEntity.setProperty(Comments.DATE, Date.from(instant));
+        commentEntity.setProperty(Comments.RATING, 0L);
+        datastore.put(commentEntity);
+
+        when(request.getParameter("type")).thenReturn("date");
+        when(request.getParameter("quantity")).thenReturn("5");
+
+        CommentsServlet servlet = new CommentsServlet();
+        initServlet(servlet);
+        servlet.doGet(request, response);
+
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        clearResponseBody();
+
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+        servlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(getResponseBody()).isEmpty();
+    }
+
+    @Test
+    public void testSearch() throws IOException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        Entity comment1 = new Entity(Comments.COMMENT_ENTITY_KIND);
+        comment1.setProperty(Comments.TEXT, "the best shawarma");
+        comment1.setProperty(Comments.RATING, 0L);
+        comment1.setProperty(Comments.DATE, Date.from(instant));
+        datastore.put(comment1);
+
+        Entity comment2 = new Entity(Comments.COMMENT_ENTITY_KIND);
+        comment2.setProperty(Comments.TEXT, "the best cheburek");
+        comment2.setProperty(Comments.RATING, 0L);
+        comment2.setProperty(Comments.DATE, Date.from(instant));
+        datastore.put(comment2);
+
+        when(request.getServletPath()).thenReturn(CommentsServlet.SEARCH_PATH);
+        when(request.getParameter("q")).thenReturn("Shawarma");
+
+        doGetRequest(request, response);
+
+        List<Map.Entry<Long, Comments.Comment>> expected =
+                Arrays.asList(new AbstractMap.SimpleEntry(
+                        comment1.getKey().getId(),
+                        Comments.Comment.getCommentFromEntity(comment1)));
+        assertThat(getResponseBody()).isEqualTo(gson.toJson(expected));
+    }
+
+    @Test
+    public void testRatingListingIsLoaded() throws IOException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        Entity commentEntity = new Entity(Comments.COMMENT_ENTITY_KIND);
+        commentEntity.setProperty(Comments.TEXT, commentText);
+        commentEntity.setProperty(Comments.DATE, Date.from(instant));
+        commentEntity.setProperty(Comments.RATING, 0L);
+        datastore.put(commentEntity);
+
+        when(request.getParameter("type")).thenReturn("rating");
+        when(request.getParameter("quantity")).thenReturn("1");
+
+        CommentsServlet servlet = new CommentsServlet();
+        initServlet(servlet);
+        servlet.doGet(request, response);
+
+        List<Map.Entry<Long, Comments.Comment>> expected =
+                Arrays.asList(new AbstractMap.SimpleEntry(
+                        commentEntity.getKey().getId(),
+                        Comments.Comment.getCommentFromEntity(commentEntity)));
+        assertThat(getResponseBody()).isEqualTo(gson.toJson(expected));
+    }
 }
@@ -1,8 +1,11 @@
 package com.google.sps.servlets;
 
 import com.google.appengine.api.datastore.*;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.sps.data.Comments;
+import com.google.sps.data.RatingShards;
 import com.google.sps.data.UserManager;
+import com.google.sps.data.VoteLedger;
 import org.junit.Test;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -10,6 +13,7 @@ import java.io.IOException;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -27,8 +31,9 @@ public class CommentsServletPostTest extends ServletTest {
 
     private void doPostRequest(HttpServletRequest request, HttpServletResponse response, Clock testClock) throws IOException {
         CommentsServlet servlet = testClock == null ? new CommentsServlet() : new CommentsServlet(testClock);
-        servlet.init();
+        initServlet(servlet);
         servlet.doPost(request, response);
+        servlet.destroy();
     }
 
     @Test
@@ -233,4 +238,183 @@ public class CommentsServletPostTest extends ServletTest {
                 HttpServletResponse.SC_BAD_REQUEST,
                 "Parameter 'isUpvote' isn't boolean or doesn't exist");
     }
+
+    @Test
+    public void testVotesAreMaterializedByOtherInstance() throws IOException, EntityNotFoundException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        List<Entity> commentEntities = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Entity comment = new Entity(Comments.COMMENT_ENTITY_KIND);
+            comment.setProperty(Comments.DATE, Date.from(testClock.instant()));
+            comment.setProperty(Comments.AUTHOR_ID, UserManager.getCurrentUserId());
+            comment.setProperty(Comments.TEXT, commentText);
+            comment.setProperty(Comments.RATING, 0L);
+            datastore.put(comment);
+            commentEntities.add(comment);
+        }
+
+        when(request.getParameter("action")).thenReturn("vote");
+        when(request.getParameter("isUpvote")).thenReturn("true");
+
+        CommentsServlet servlet = new CommentsServlet(testClock);
+        initServlet(servlet);
+        for (Entity comment : commentEntities) {
+            when(request.getParameter("comment-id")).thenReturn(Long.toString(comment.getKey().getId()));
+            servlet.doPost(request, response);
+        }
+
+        // votes are written to shards, the rating is recalculated later
+        for (Entity comment : commentEntities) {
+            assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(0L);
+        }
+
+        // the instance, which received votes, is gone, but another one finds them in the datastore
+        CommentsServlet otherServlet = new CommentsServlet(testClock);
+        initServlet(otherServlet);
+        otherServlet.destroy();
+        for (Entity comment : commentEntities) {
+            assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void testRepeatedVoteIsRejected() throws IOException, EntityNotFoundException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        Entity comment = new Entity(Comments.COMMENT_ENTITY_KIND);
+        comment.setProperty(Comments.DATE, Date.from(testClock.instant()));
+        comment.setProperty(Comments.AUTHOR_ID, UserManager.getCurrentUserId());
+        comment.setProperty(Comments.TEXT, commentText);
+        comment.setProperty(Comments.RATING, 0L);
+        datastore.put(comment);
+
+        when(request.getParameter("action")).thenReturn("vote");
+        when(request.getParameter("comment-id")).thenReturn(Long.toString(comment.getKey().getId()));
+        when(request.getParameter("isUpvote")).thenReturn("true");
+
+        CommentsServlet servlet = new CommentsServlet(testClock);
+        initServlet(servlet);
+        servlet.doPost(request, response);
+        when(request.getParameter("isUpvote")).thenReturn("false");
+        servlet.doPost(request, response);
+        servlet.destroy();
+
+        verify(response).sendError(HttpServletResponse.SC_CONFLICT, "User has already voted for this comment");
+        assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(1L);
+    }
+
+    @Test
+    public void testRepeatedVoteIsRejectedAfterCacheEviction() throws IOException, EntityNotFoundException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        Entity comment = new Entity(Comments.COMMENT_ENTITY_KIND);
+        comment.setProperty(Comments.DATE, Date.from(testClock.instant()));
+        comment.setProperty(Comments.AUTHOR_ID, UserManager.getCurrentUserId());
+        comment.setProperty(Comments.TEXT, commentText);
+        comment.setProperty(Comments.RATING, 0L);
+        datastore.put(comment);
+
+        when(request.getParameter("action")).thenReturn("vote");
+        when(request.getParameter("comment-id")).thenReturn(Long.toString(comment.getKey().getId()));
+        when(request.getParameter("isUpvote")).thenReturn("true");
+
+        doPostRequest(request, response, testClock);
+        MemcacheServiceFactory.getMemcacheService("votes").clearAll();
+        // the new servlet has an empty local cache of votes
+        doPostRequest(request, response, testClock);
+
+        verify(response).sendError(HttpServletResponse.SC_CONFLICT, "User has already voted for this comment");
+        assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(1L);
+    }
+
+    @Test
+    public void testVoteForMissingCommentIsNotRecorded() throws IOException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        when(request.getParameter("action")).thenReturn("vote");
+        when(request.getParameter("comment-id")).thenReturn("42");
+        when(request.getParameter("isUpvote")).thenReturn("true");
+
+        doPostRequest(request, response, testClock);
+
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND, "Comment with this id doesn't exist");
+        List<Entity> votes = datastore.prepare(new Query(VoteLedger.VOTE_ENTITY_KIND))
+                .asList(FetchOptions.Builder.withDefaults());
+        assertThat(votes).isEmpty();
+    }
+
+    @Test
+    public void testVotesAreDeletedWithComment() throws IOException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        Entity comment = new Entity(Comments.COMMENT_ENTITY_KIND);
+        comment.setProperty(Comments.DATE, Date.from(testClock.instant()));
+        comment.setProperty(Comments.AUTHOR_ID, UserManager.getCurrentUserId());
+        comment.setProperty(Comments.TEXT, commentText);
+        comment.setProperty(Comments.RATING, 0L);
+        datastore.put(comment);
+
+        when(request.getParameter("action")).thenReturn("vote");
+        when(request.getParameter("comment-id")).thenReturn(Long.toString(comment.getKey().getId()));
+        when(request.getParameter("isUpvote")).thenReturn("true");
+        doPostRequest(request, response, testClock);
+        // the vote and the change of the rating are written together
+        assertThat(datastore.prepare(new Query(VoteLedger.VOTE_ENTITY_KIND)).countEntities(
+                FetchOptions.Builder.withDefaults())).isEqualTo(1);
+        assertThat(datastore.prepare(new Query(RatingShards.SHARD_ENTITY_KIND)).countEntities(
+                FetchOptions.Builder.withDefaults())).isEqualTo(1);
+
+        when(request.getParameter("action")).thenReturn("delete");
+        doPostRequest(request, response, testClock);
+
+        assertThat(datastore.prepare(new Query(VoteLedger.VOTE_ENTITY_KIND)).countEntities(
+                FetchOptions.Builder.withDefaults())).isEqualTo(0);
+        assertThat(datastore.prepare(new Query(RatingShards.SHARD_ENTITY_KIND)).countEntities(
+                FetchOptions.Builder.withDefaults())).isEqualTo(0);
+    }
+
+    @Test
+    public void testRatingsAreMaterializedByCron() throws IOException, EntityNotFoundException {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        Entity comment = new Entity(Comments.COMMENT_ENTITY_KIND);
+        comment.setProperty(Comments.DATE, Date.from(testClock.instant()));
+        comment.setProperty(Comments.AUTHOR_ID, UserManager.getCurrentUserId());
+        comment.setProperty(Comments.TEXT, commentText);
+        comment.setProperty(Comments.RATING, 0L);
+        datastore.put(comment);
+
+        when(request.getParameter("action")).thenReturn("vote");
+        when(request.getParameter("comment-id")).thenReturn(Long.toString(comment.getKey().getId()));
+        when(request.getParameter("isUpvote")).thenReturn("true");
+
+        CommentsServlet servlet = new CommentsServlet(testClock);
+        initServlet(servlet);
+        servlet.doPost(request, response);
+        assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(0L);
+
+        HttpServletRequest cronRequest = mock(HttpServletRequest.class);
+        when(cronRequest.getServletPath()).thenReturn(CommentsServlet.MATERIALIZE_PATH);
+        when(cronRequest.getHeader("X-Appengine-Cron")).thenReturn("true");
+        servlet.doGet(cronRequest, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NO_CONTENT);
+        assertThat(datastore.get(comment.getKey()).getProperty(Comments.RATING)).isEqualTo(1L);
+    }
+
+    @Test
+    public void testActionsAreRateLimited() throws IOException {
+        when(request.getParameter("action")).thenReturn("add");
+        when(request.getParameter(Comments.TEXT)).thenReturn(commentText);
+
+        CommentsServlet servlet = new CommentsServlet(testClock);
+        initServlet(servlet);
+        for (int i = 0; i <= CommentsServlet.ACTIONS_BURST; i++) {
+            servlet.doPost(request, response);
+        }
+
+        verify(response, times(CommentsServlet.ACTIONS_BURST)).sendRedirect(commentsPage);
+        verify(response).sendError(429, "Too many actions with comments, try again later");
+    }
 }
@@ -0,0 +1,50 @@
+package com.google.sps.servlets;
+
+import org.junit.Test;
+import javax.servlet.http.HttpServletRequest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EncodedResponseWriterTest {
+    private final String eTag = "\"abc\"";
+
+    private static HttpServletRequest requestWithHeader(String name, String value) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader(name)).thenReturn(value);
+        return request;
+    }
+
+    private boolean isNotModified(String ifNoneMatch) {
+        return EncodedResponseWriter.isNotModified(requestWithHeader("If-None-Match", ifNoneMatch), eTag);
+    }
+
+    private static boolean isGzipAccepted(String acceptEncoding) {
+        return EncodedResponseWriter.isGzipAccepted(requestWithHeader("Accept-Encoding", acceptEncoding));
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        assertThat(isNotModified(null)).isFalse();
+        assertThat(isNotModified("\"abc\"")).isTrue();
+        assertThat(isNotModified("W/\"abc\"")).isTrue();
+        assertThat(isNotModified("\"xyz\", W/\"abc\"")).isTrue();
+        assertThat(isNotModified("*")).isTrue();
+        assertThat(isNotModified("\"abcd\"")).isFalse();
+        assertThat(isNotModified("\"xabc\"")).isFalse();
+    }
+
+    @Test
+    public void testAcceptEncoding() {
+        assertThat(isGzipAccepted(null)).isFalse();
+        assertThat(isGzipAccepted("gzip")).isTrue();
+        assertThat(isGzipAccepted("deflate, gzip;q=0.5")).isTrue();
+        assertThat(isGzipAccepted("x-gzip")).isTrue();
+        assertThat(isGzipAccepted("gzip;q=0")).isFalse();
+        assertThat(isGzipAccepted("gzip; q=0.0, identity")).isFalse();
+        assertThat(isGzipAccepted("*")).isTrue();
+        assertThat(isGzipAccepted("*;q=1, gzip;q=0")).isFalse();
+        assertThat(isGzipAccepted("notgzip")).isFalse();
+    }
+}
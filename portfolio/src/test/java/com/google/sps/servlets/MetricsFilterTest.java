@@ -0,0 +1,74 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.sps.data.Comments;
+import com.google.sps.data.CountingDatastoreService;
+import com.google.sps.data.RequestMetrics;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetricsFilterTest extends ServletTest {
+    private RequestMetrics initFilter(MetricsFilter filter) {
+        FilterConfig filterConfig = mock(FilterConfig.class);
+        ServletContext servletContext = mock(ServletContext.class);
+        when(filterConfig.getServletContext()).thenReturn(servletContext);
+        filter.init(filterConfig);
+
+        ArgumentCaptor<Object> metrics = ArgumentCaptor.forClass(Object.class);
+        verify(servletContext).setAttribute(eq(MetricsFilter.METRICS_ATTRIBUTE), metrics.capture());
+        return (RequestMetrics) metrics.getValue();
+    }
+
+    @Test
+    public void testRequestIsRecorded() throws IOException, ServletException {
+        MetricsFilter filter = new MetricsFilter();
+        RequestMetrics metrics = initFilter(filter);
+
+        when(request.getServletPath()).thenReturn("/comments");
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getParameter("action")).thenReturn("vote");
+        when(response.getStatus()).thenReturn(302);
+
+        CountingDatastoreService datastore = new CountingDatastoreService(DatastoreServiceFactory.getDatastoreService());
+        filter.doFilter(request, response, (filteredRequest, filteredResponse) -> {
+            datastore.put(new Entity(Comments.COMMENT_ENTITY_KIND));
+            datastore.put(new Entity(Comments.COMMENT_ENTITY_KIND));
+        });
+
+        StringWriter output = new StringWriter();
+        metrics.writePrometheus(new PrintWriter(output));
+        String labels = "route=\"/comments\",action=\"VOTE\"";
+        assertThat(output.toString()).contains("portfolio_request_duration_seconds_count{" + labels + "} 1\n");
+        assertThat(output.toString()).contains("portfolio_responses_total{" + labels + ",status=\"302\"} 1\n");
+        assertThat(output.toString()).contains("portfolio_datastore_calls_total{" + labels + "} 2\n");
+    }
+
+    @Test
+    public void testUnknownRouteIsRecordedAsOther() throws IOException, ServletException {
+        MetricsFilter filter = new MetricsFilter();
+        RequestMetrics metrics = initFilter(filter);
+
+        when(request.getServletPath()).thenReturn("/unknown");
+        when(request.getMethod()).thenReturn("GET");
+        when(response.getStatus()).thenReturn(404);
+        filter.doFilter(request, response, (filteredRequest, filteredResponse) -> {});
+
+        StringWriter output = new StringWriter();
+        metrics.writePrometheus(new PrintWriter(output));
+        assertThat(output.toString()).contains("portfolio_responses_total{route=\"other\",action=\"\",status=\"404\"} 1\n");
+        assertThat(output.toString()).doesNotContain("/unknown");
+    }
+}
@@ -0,0 +1,50 @@
+package com.google.sps.servlets;
+
+import com.google.sps.data.RequestMetrics;
+import org.junit.Test;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetricsServletTest extends ServletTest {
+    private MetricsServlet initServlet() throws ServletException {
+        ServletContext servletContext = mock(ServletContext.class);
+        when(servletContext.getAttribute(MetricsFilter.METRICS_ATTRIBUTE))
+                .thenReturn(new RequestMetrics(Collections.emptyMap()));
+        ServletConfig servletConfig = mock(ServletConfig.class);
+        when(servletConfig.getServletContext()).thenReturn(servletContext);
+
+        MetricsServlet servlet = new MetricsServlet();
+        servlet.init(servletConfig);
+        return servlet;
+    }
+
+    @Test
+    public void testMetricsAreReturnedToAdmin() throws IOException, ServletException {
+        setUpAdmin();
+        initServlet().doGet(request, response);
+
+        verify(response, never()).sendError(anyInt(), anyString());
+        verify(response).setContentType("text/plain; version=0.0.4");
+        assertThat(getResponseBody()).contains("portfolio_");
+    }
+
+    @Test
+    public void testMetricsAreForbiddenForOtherUsers() throws IOException, ServletException {
+        initServlet().doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_FORBIDDEN, "Only administrators are allowed to read metrics");
+        assertThat(getResponseBody()).isEmpty();
+    }
+}
@@ -1,29 +1,45 @@
 package com.google.sps.servlets;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
 import org.junit.After;
 import org.junit.Before;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Setups the environment and gives a configuration for
  * request, response, writer and stringWriter, which
- * can be necessary in the testing of servlets.
+ * can be necessary in the testing of servlets. The user is logged in, but isn't an administrator,
+ * tests of administrators' actions call setUpAdmin().
  * @author Olga Shimanskaia <olgashimanskaia@gmail.com>
  */
 public class ServletTest {
     protected final String testUserId = "test_user";
     protected final LocalServiceTestHelper helper =
             new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+                    new LocalMemcacheServiceTestConfig(),
                     new LocalUserServiceTestConfig())
                     .setEnvIsLoggedIn(true)
                     .setEnvEmail("test-user@test.com")
@@ -39,16 +55,82 @@ public class ServletTest {
     protected HttpServletResponse response;
     protected PrintWriter writer;
     protected StringWriter stringWriter;
+    protected ByteArrayOutputStream outputStream;
+    /** Servlet context, which is shared by all servlets initialized with initServlet() in the test. */
+    protected ServletContext servletContext;
 
     @Before
     public void setUp() throws IOException {
         helper.setUp();
 
+        Map<String, Object> attributes = new HashMap<>();
+        this.servletContext = mock(ServletContext.class);
+        when(this.servletContext.getAttribute(anyString()))
+                .thenAnswer(invocation -> attributes.get((String) invocation.getArguments()[0]));
+        doAnswer(invocation -> attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(this.servletContext).setAttribute(anyString(), any());
         this.request = mock(HttpServletRequest.class);
         this.response = mock(HttpServletResponse.class);
         this.stringWriter = new StringWriter();
         this.writer = new PrintWriter(this.stringWriter);
         when(this.response.getWriter()).thenReturn(this.writer);
+        this.outputStream = new ByteArrayOutputStream();
+        when(this.response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {}
+
+            @Override
+            public void write(int b) {
+                outputStream.write(b);
+            }
+        });
+    }
+
+    /**
+     * Makes the current user an administrator.
+     */
+    protected void setUpAdmin() {
+        helper.tearDown();
+        helper.setEnvIsAdmin(true).setUp();
+    }
+
+    /**
+     * Initializes the servlet with the shared servletContext.
+     * @param servlet   Servlet to initialize.
+     * @return The same servlet.
+     */
+    protected <T extends HttpServlet> T initServlet(T servlet) {
+        ServletConfig servletConfig = mock(ServletConfig.class);
+        when(servletConfig.getServletContext()).thenReturn(this.servletContext);
+        try {
+            servlet.init(servletConfig);
+        } catch (ServletException e) {
+            throw new IllegalStateException(e);
+        }
+        return servlet;
+    }
+
+    /**
+     * Returns everything, which was written to the response either
+     * with the writer or with the output stream.
+     */
+    protected String getResponseBody() {
+        this.writer.flush();
+        return this.stringWriter.toString() + new String(this.outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Clears everything, which was written to the response.
+     */
+    protected void clearResponseBody() {
+        this.writer.flush();
+        this.stringWriter.getBuffer().setLength(0);
+        this.outputStream.reset();
     }
 
     @After
@@ -0,0 +1,123 @@
+package com.google.sps.servlets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShawarmaServletTest extends ServletTest {
+    private static final String BBQ_JSON =
+            "{\"latitude\":59.937184,\"longitude\":30.278314,\"name\":\"BBQ Shawarma\",\"description\":\"Tasty\"}";
+    private static final String REAL_JSON =
+            "{\"latitude\":59.929089,\"longitude\":30.324867,\"name\":\"Real Shawarma\",\"description\":\"Juicy\"}";
+    private static final String SHAWARMA_JSON = "[" + BBQ_JSON + "," + REAL_JSON + "]";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ShawarmaServlet createServlet() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("shawarma.json");
+        Files.write(path, SHAWARMA_JSON.getBytes(StandardCharsets.UTF_8));
+        ShawarmaServlet servlet = new ShawarmaServlet(path);
+        servlet.init();
+        return servlet;
+    }
+
+    @Test
+    public void testAllPlaces() throws IOException {
+        ShawarmaServlet servlet = createServlet();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo(SHAWARMA_JSON);
+    }
+
+    @Test
+    public void testPlacesInBoundingBox() throws IOException {
+        when(request.getParameter("bbox")).thenReturn("59.92,30.3,59.94,30.33");
+
+        ShawarmaServlet servlet = createServlet();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo("[" + REAL_JSON + "]");
+    }
+
+    @Test
+    public void testNearestPlaces() throws IOException {
+        when(request.getParameter("near")).thenReturn("59.94,30.28");
+        when(request.getParameter("k")).thenReturn("1");
+
+        ShawarmaServlet servlet = createServlet();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo("[" + BBQ_JSON + "]");
+    }
+
+    @Test
+    public void testInvalidBoundingBox() throws IOException {
+        when(request.getParameter("bbox")).thenReturn("59.94,30.3,59.93");
+
+        ShawarmaServlet servlet = createServlet();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST,
+                "Parameter 'bbox' must be 'south,west,north,east' with valid coordinates");
+    }
+
+    @Test
+    public void testClusters() throws IOException {
+        when(request.getParameter("zoom")).thenReturn("0");
+
+        ShawarmaServlet servlet = createServlet();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).startsWith("[{\"latitude\":59.9331365,\"longitude\":30.3015");
+        assertThat(getResponseBody()).endsWith(",\"count\":2}]");
+    }
+
+    @Test
+    public void testClusterOfOnePlace() throws IOException {
+        when(request.getParameter("zoom")).thenReturn("20");
+        when(request.getParameter("bbox")).thenReturn("59.93,30.2,59.94,30.3");
+
+        ShawarmaServlet servlet = createServlet();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo(
+                "[{\"latitude\":59.937184,\"longitude\":30.278314,\"count\":1,\"place\":" + BBQ_JSON + "}]");
+    }
+
+    @Test
+    public void testBinaryPlaces() throws IOException {
+        when(request.getHeader("Accept")).thenReturn("application/octet-stream");
+
+        ShawarmaServlet servlet = createServlet();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).setContentType("application/octet-stream");
+        ByteBuffer body = ByteBuffer.wrap(outputStream.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(body.getInt()).isEqualTo(2);
+        assertThat(body.getInt()).isEqualTo(0);
+        assertThat(body.getInt()).isEqualTo(2);
+        assertThat(body.getInt()).isEqualTo(59937184);
+        assertThat(body.getInt()).isEqualTo(30278314);
+        assertThat(body.remaining()).isEqualTo(2 * 4 + 4 * 4
+                + "BBQ ShawarmaReal ShawarmaTastyJuicy".length());
+    }
+}
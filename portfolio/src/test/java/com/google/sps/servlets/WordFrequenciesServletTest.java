@@ -0,0 +1,168 @@
+package com.google.sps.servlets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WordFrequenciesServletTest extends ServletTest {
+    private static final String WORDS_JSON =
+            "[{\"musician\":\"Queen\",\"albumTitle\":\"Jazz\",\"words\":[{\"word\":\"bicycle\",\"frequency\":5}]}]";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private WordFrequenciesServlet createServlet(String json) throws IOException {
+        Path path = folder.getRoot().toPath().resolve("wordsFrequencies.json");
+        Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+        WordFrequenciesServlet servlet = new WordFrequenciesServlet(path);
+        servlet.init();
+        return servlet;
+    }
+
+    @Test
+    public void testWordsFrequencies() throws IOException {
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo(WORDS_JSON);
+    }
+
+    @Test
+    public void testNotModified() throws IOException {
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        clearResponseBody();
+
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(getResponseBody()).isEmpty();
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        WordFrequenciesServlet servlet = createServlet("[{\"musician\":");
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).sendError(
+                HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "Json file with words frequencies is invalid");
+    }
+
+    @Test
+    public void testChangedFileIsReloaded() throws IOException {
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        String changedJson = WORDS_JSON.replace("Jazz", "News of the World");
+        // the mapped file is replaced atomically, as it must be done in production
+        Path changedFile = folder.newFile().toPath();
+        Files.write(changedFile, changedJson.getBytes(StandardCharsets.UTF_8));
+        Files.move(changedFile, folder.getRoot().toPath().resolve("wordsFrequencies.json"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // the watch service reports changes asynchronously, so the reload is triggered directly
+        servlet.reload();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo(changedJson);
+    }
+
+    @Test
+    public void testByteRange() throws IOException {
+        when(request.getHeader("Range")).thenReturn("bytes=2-11");
+
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 2-11/" + WORDS_JSON.length());
+        assertThat(getResponseBody()).isEqualTo(WORDS_JSON.substring(2, 12));
+    }
+
+    @Test
+    public void testSuffixByteRange() throws IOException {
+        when(request.getHeader("Range")).thenReturn("bytes=-5");
+
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo(WORDS_JSON.substring(WORDS_JSON.length() - 5));
+    }
+
+    @Test
+    public void testUnsatisfiableByteRange() throws IOException {
+        when(request.getHeader("Range")).thenReturn("bytes=" + WORDS_JSON.length() + "-");
+
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).sendError(416);
+        assertThat(getResponseBody()).isEmpty();
+    }
+
+    @Test
+    public void testMissingFile() throws IOException {
+        WordFrequenciesServlet servlet = new WordFrequenciesServlet(folder.getRoot().toPath().resolve("missing.json"));
+        servlet.init();
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    public void testTopWordsOfAlbum() throws IOException {
+        when(request.getParameter("album")).thenReturn("jazz");
+        when(request.getParameter("top")).thenReturn("1");
+
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo(WORDS_JSON.substring(1, WORDS_JSON.length() - 1));
+    }
+
+    @Test
+    public void testAlbumsOfWord() throws IOException {
+        when(request.getParameter("word")).thenReturn("bicycle");
+
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        assertThat(getResponseBody()).isEqualTo("[{\"musician\":\"Queen\",\"albumTitle\":\"Jazz\",\"frequency\":5}]");
+    }
+
+    @Test
+    public void testInvalidTop() throws IOException {
+        when(request.getParameter("top")).thenReturn("0");
+
+        WordFrequenciesServlet servlet = createServlet(WORDS_JSON);
+        servlet.doGet(request, response);
+        servlet.destroy();
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter 'top' must be a positive number");
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Counts per year, stored as prefix sums in an int array, so the sum over any range of years takes
+ * two array reads. Years that are missing between the first and the last year count as 0.
+ */
+public class YearSeries {
+  private final int firstYear;
+  /** sums[i] is the total count of the years before firstYear + i. */
+  private final int[] sums;
+
+  /** Creates a series from parallel arrays of years (in any order) and their counts. */
+  public YearSeries(int[] years, int[] counts) {
+    int first = Integer.MAX_VALUE;
+    int last = Integer.MIN_VALUE;
+    for (int year : years) {
+      first = Math.min(first, year);
+      last = Math.max(last, year);
+    }
+    if (years.length == 0) {
+      first = 0;
+      last = -1;
+    }
+
+    firstYear = first;
+    sums = new int[last - first + 2];
+    for (int i = 0; i < years.length; i++) {
+      sums[years[i] - first + 1] += counts[i];
+    }
+    for (int i = 1; i < sums.length; i++) {
+      sums[i] += sums[i - 1];
+    }
+  }
+
+  public int getFirstYear() {
+    return firstYear;
+  }
+
+  public int getLastYear() {
+    return firstYear + sums.length - 2;
+  }
+
+  /** Returns the total count from one year to another, both inclusive and clamped to the series. */
+  public int sum(int from, int to) {
+    from = Math.max(from, getFirstYear());
+    to = Math.min(to, getLastYear());
+    if (from > to) {
+      return 0;
+    }
+    return sums[to - firstYear + 1] - sums[from - firstYear];
+  }
+}
@@ -14,42 +14,119 @@
 
 package com.google.sps.servlets;
 
-import com.google.gson.Gson;
+import com.google.sps.data.YearSeries;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Scanner;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}] */
+/**
+ * Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}]
+ *
+ * <p>Optional parameters select a range of years, both inclusive, and group them into buckets,
+ * e.g. /bigfoot-data?from=1960&to=1979&bucket=decade returns {"1960": 96, "1970": 420}. Each
+ * bucket is keyed by its first year (1950 for the 1950s) and counts only the years in the range.
+ * Buckets are computed from prefix sums, so each one takes constant time. The response without
+ * parameters is encoded once in init().
+ */
 @WebServlet("/bigfoot-data")
 public class BigfootDataServlet extends HttpServlet {
 
-  private LinkedHashMap<Integer, Integer> bigfootSightings = new LinkedHashMap<>();
+  private YearSeries bigfootSightings;
+  private byte[] allSightingsJson;
 
   @Override
   public void init() {
+    int[] years = new int[128];
+    int[] counts = new int[128];
+    int size = 0;
+
     Scanner scanner = new Scanner(getServletContext().getResourceAsStream(
         "/WEB-INF/bigfoot-sightings-by-year.csv"));
     while (scanner.hasNextLine()) {
       String line = scanner.nextLine();
       String[] cells = line.split(",");
 
-      Integer year = Integer.valueOf(cells[0]);
-      Integer sightings = Integer.valueOf(cells[1]);
-
-      bigfootSightings.put(year, sightings);
+      if (size == years.length) {
+        years = Arrays.copyOf(years, size * 2);
+        counts = Arrays.copyOf(counts, size * 2);
+      }
+      years[size] = Integer.parseInt(cells[0]);
+      counts[size] = Integer.parseInt(cells[1]);
+      size++;
     }
     scanner.close();
+
+    bigfootSightings = new YearSeries(Arrays.copyOf(years, size), Arrays.copyOf(counts, size));
+    allSightingsJson =
+        toJson(bigfootSightings.getFirstYear(), bigfootSightings.getLastYear(), 1)
+            .getBytes(StandardCharsets.UTF_8);
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String fromParameter = request.getParameter("from");
+    String toParameter = request.getParameter("to");
+    String bucketParameter = request.getParameter("bucket");
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(bigfootSightings);
-    response.getWriter().println(json);
+    if (fromParameter == null && toParameter == null && bucketParameter == null) {
+      response.setContentLength(allSightingsJson.length);
+      response.getOutputStream().write(allSightingsJson);
+      return;
+    }
+
+    int from;
+    int to;
+    try {
+      from = fromParameter == null
+          ? bigfootSightings.getFirstYear() : Integer.parseInt(fromParameter);
+      to = toParameter == null ? bigfootSightings.getLastYear() : Integer.parseInt(toParameter);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "from and to must be years");
+      return;
+    }
+    if (from > to) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "from must not be after to");
+      return;
+    }
+
+    int bucketSize;
+    if (bucketParameter == null || bucketParameter.equals("year")) {
+      bucketSize = 1;
+    } else if (bucketParameter.equals("decade")) {
+      bucketSize = 10;
+    } else if (bucketParameter.equals("century")) {
+      bucketSize = 100;
+    } else {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "bucket must be year, decade or century");
+      return;
+    }
+
+    // Years outside of the data have no sightings to return.
+    from = Math.max(from, bigfootSightings.getFirstYear());
+    to = Math.min(to, bigfootSightings.getLastYear());
+    response.getWriter().println(toJson(from, to, bucketSize));
+  }
+
+  /** Returns the sums of the buckets between two years, both inclusive, as a JSON object. */
+  private String toJson(int from, int to, int bucketSize) {
+    StringBuilder json = new StringBuilder("{");
+    for (int bucket = Math.floorDiv(from, bucketSize) * bucketSize;
+        bucket <= to;
+        bucket += bucketSize) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      int sightings =
+          bigfootSightings.sum(Math.max(bucket, from), Math.min(bucket + bucketSize - 1, to));
+      json.append('"').append(bucket).append("\":").append(sightings);
+    }
+    return json.append('}').toString();
   }
 }
@@ -20,10 +20,13 @@ import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
 import com.google.sps.data.Marker;
+import com.google.sps.data.PointsBuffer;
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -35,12 +38,35 @@ import org.jsoup.safety.Whitelist;
 @WebServlet("/markers")
 public class MarkerServlet extends HttpServlet {
 
-  /** Responds with a JSON array containing marker data. */
+  /**
+   * Responds with a JSON array containing marker data, or with the markers in the binary format of
+   * PointsBuffer (with the content as the only text column), if the client accepts
+   * application/octet-stream.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
+    List<Marker> markers = getMarkers();
+    response.setHeader("Vary", "Accept");
+
+    String accept = request.getHeader("Accept");
+    if (accept != null && accept.contains(PointsBuffer.CONTENT_TYPE)) {
+      double[] lats = new double[markers.size()];
+      double[] lngs = new double[markers.size()];
+      String[][] contents = new String[1][markers.size()];
+      for (int i = 0; i < markers.size(); i++) {
+        lats[i] = markers.get(i).getLat();
+        lngs[i] = markers.get(i).getLng();
+        contents[0][i] = markers.get(i).getContent();
+      }
+      ByteBuffer buffer = PointsBuffer.encode(lats, lngs, new int[0][], contents);
 
-    Collection<Marker> markers = getMarkers();
+      response.setContentType(PointsBuffer.CONTENT_TYPE);
+      response.setContentLength(buffer.remaining());
+      Channels.newChannel(response.getOutputStream()).write(buffer);
+      return;
+    }
+
+    response.setContentType("application/json");
     Gson gson = new Gson();
     String json = gson.toJson(markers);
 
@@ -59,8 +85,8 @@ public class MarkerServlet extends HttpServlet {
   }
 
   /** Fetches markers from Datastore. */
-  private Collection<Marker> getMarkers() {
-    Collection<Marker> markers = new ArrayList<>();
+  private List<Marker> getMarkers() {
+    List<Marker> markers = new ArrayList<>();
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     Query query = new Query("Marker");
@@ -32,13 +32,47 @@ function createMap() {
   fetchMarkers();
 }
 
-/** Fetches markers from the backend and adds them to the map. */
+/**
+ * Fetches markers from the backend and adds them to the map. The markers are
+ * requested in the binary format, which is smaller than JSON.
+ */
 function fetchMarkers() {
-  fetch('/markers').then(response => response.json()).then((markers) => {
-    markers.forEach(
-        (marker) => {
-            createMarkerForDisplay(marker.lat, marker.lng, marker.content)});
-  });
+  fetch('/markers', {headers: {'Accept': 'application/octet-stream'}})
+      .then(response => response.arrayBuffer())
+      .then((buffer) => {
+        decodeMarkers(buffer).forEach(
+            (marker) => {
+                createMarkerForDisplay(marker.lat, marker.lng, marker.content)});
+      });
+}
+
+/**
+ * Decodes markers sent by the server in the PointsBuffer format: a
+ * little-endian header (count, int columns, text columns), lat lng deltas in
+ * millionths of a degree, then the byte lengths and UTF-8 bytes of the
+ * contents. Typed arrays use the platform byte order, which is little-endian
+ * in every browser.
+ */
+function decodeMarkers(buffer) {
+  const [count] = new Uint32Array(buffer, 0, 1);
+  const coordinates = new Int32Array(buffer, 3 * 4, 2 * count);
+  const lengths = new Uint32Array(
+      buffer, 3 * 4 + coordinates.byteLength, count);
+  const bytes = new Uint8Array(buffer);
+  const decoder = new TextDecoder();
+
+  const markers = [];
+  let offset = 3 * 4 + coordinates.byteLength + lengths.byteLength;
+  let lat = 0;
+  let lng = 0;
+  for (let i = 0; i < count; i++) {
+    lat += coordinates[2 * i];
+    lng += coordinates[2 * i + 1];
+    const content = decoder.decode(bytes.subarray(offset, offset + lengths[i]));
+    offset += lengths[i];
+    markers.push({lat: lat / 1e6, lng: lng / 1e6, content: content});
+  }
+  return markers;
 }
 
 /** Creates a marker that shows a read-only info window when clicked. */
@@ -0,0 +1,202 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clusters of map points, precomputed for every zoom level. Points are grouped by a grid of Web
+ * Mercator cells, 4 cells per tile side, so a cluster covers about 64x64 pixels of the map. Each
+ * cell splits into 4 cells on the next zoom level, so every level is computed by merging the
+ * clusters of the next one.
+ */
+public class GridClusters {
+  public static final int MAX_ZOOM = 20;
+  private static final int CELLS_PER_TILE_BITS = 2;
+  private static final double MAX_LATITUDE = 85.05112878;
+
+  /** Clusters of one zoom level in parallel arrays, sorted by column and then by row. */
+  private static class Level {
+    final int[] columns;
+    final int[] rows;
+    final double[] lats;
+    final double[] lngs;
+    final int[] counts;
+
+    Level(int size) {
+      columns = new int[size];
+      rows = new int[size];
+      lats = new double[size];
+      lngs = new double[size];
+      counts = new int[size];
+    }
+  }
+
+  private final Level[] levels = new Level[MAX_ZOOM + 1];
+
+  public GridClusters(double[] lats, double[] lngs) {
+    int cells = cellsAtZoom(MAX_ZOOM);
+    Level points = new Level(lats.length);
+    for (int i = 0; i < lats.length; i++) {
+      points.columns[i] = column(lngs[i], cells);
+      points.rows[i] = row(lats[i], cells);
+      points.lats[i] = lats[i];
+      points.lngs[i] = lngs[i];
+      points.counts[i] = 1;
+    }
+    levels[MAX_ZOOM] = merge(points);
+
+    for (int zoom = MAX_ZOOM - 1; zoom >= 0; zoom--) {
+      Level children = levels[zoom + 1];
+      Level parents = new Level(children.columns.length);
+      for (int i = 0; i < children.columns.length; i++) {
+        parents.columns[i] = children.columns[i] >> 1;
+        parents.rows[i] = children.rows[i] >> 1;
+        parents.lats[i] = children.lats[i];
+        parents.lngs[i] = children.lngs[i];
+        parents.counts[i] = children.counts[i];
+      }
+      levels[zoom] = merge(parents);
+    }
+  }
+
+  /** Merges clusters that share a cell. The merged centroid is weighted by counts. */
+  private static Level merge(Level clusters) {
+    Integer[] order = new Integer[clusters.columns.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(
+        order,
+        (a, b) ->
+            clusters.columns[a] != clusters.columns[b]
+                ? Integer.compare(clusters.columns[a], clusters.columns[b])
+                : Integer.compare(clusters.rows[a], clusters.rows[b]));
+
+    int size = 0;
+    for (int i = 0; i < order.length; i++) {
+      if (i == 0 || !sameCell(clusters, order[i - 1], order[i])) {
+        size++;
+      }
+    }
+
+    Level merged = new Level(size);
+    int cluster = -1;
+    for (int i = 0; i < order.length; i++) {
+      int j = order[i];
+      if (i == 0 || !sameCell(clusters, order[i - 1], j)) {
+        cluster++;
+        merged.columns[cluster] = clusters.columns[j];
+        merged.rows[cluster] = clusters.rows[j];
+      }
+      merged.lats[cluster] += clusters.lats[j] * clusters.counts[j];
+      merged.lngs[cluster] += clusters.lngs[j] * clusters.counts[j];
+      merged.counts[cluster] += clusters.counts[j];
+    }
+    for (int i = 0; i < size; i++) {
+      merged.lats[i] /= merged.counts[i];
+      merged.lngs[i] /= merged.counts[i];
+    }
+    return merged;
+  }
+
+  private static boolean sameCell(Level clusters, int a, int b) {
+    return clusters.columns[a] == clusters.columns[b] && clusters.rows[a] == clusters.rows[b];
+  }
+
+  private static int cellsAtZoom(int zoom) {
+    return 1 << (zoom + CELLS_PER_TILE_BITS);
+  }
+
+  private static int column(double lng, int cells) {
+    double x = (lng + 180) / 360;
+    return Math.max(0, Math.min(cells - 1, (int) Math.floor(x * cells)));
+  }
+
+  private static int row(double lat, int cells) {
+    double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat))));
+    double y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    return Math.max(0, Math.min(cells - 1, (int) Math.floor(y * cells)));
+  }
+
+  /** Returns every cluster of the zoom level. */
+  public List<UfoCluster> getClusters(int zoom) {
+    return getClusters(zoom, -MAX_LATITUDE, -180, MAX_LATITUDE, 180);
+  }
+
+  /**
+   * Returns the clusters of the zoom level whose cells intersect the bounding box. If west is
+   * greater than east, the box crosses the 180th meridian.
+   */
+  public List<UfoCluster> getClusters(
+      int zoom, double south, double west, double north, double east) {
+    zoom = Math.max(0, Math.min(MAX_ZOOM, zoom));
+    Level level = levels[zoom];
+    int cells = cellsAtZoom(zoom);
+    int firstRow = row(north, cells);
+    int lastRow = row(south, cells);
+
+    List<UfoCluster> clusters = new ArrayList<>();
+    if (west <= east) {
+      collect(level, column(west, cells), column(east, cells), firstRow, lastRow, clusters);
+    } else {
+      collect(level, column(west, cells), cells - 1, firstRow, lastRow, clusters);
+      collect(level, 0, column(east, cells), firstRow, lastRow, clusters);
+    }
+    return clusters;
+  }
+
+  /**
+   * Adds the clusters inside the range of columns and rows. Rows outside the range are skipped with
+   * a binary search, so an empty column costs a single search.
+   */
+  private static void collect(
+      Level level,
+      int firstColumn,
+      int lastColumn,
+      int firstRow,
+      int lastRow,
+      List<UfoCluster> clusters) {
+    int i = lowerBound(level, firstColumn, firstRow);
+    while (i < level.columns.length && level.columns[i] <= lastColumn) {
+      if (level.rows[i] < firstRow) {
+        i = lowerBound(level, level.columns[i], firstRow);
+      } else if (level.rows[i] > lastRow) {
+        i = lowerBound(level, level.columns[i] + 1, firstRow);
+      } else {
+        clusters.add(new UfoCluster(level.lats[i], level.lngs[i], level.counts[i]));
+        i++;
+      }
+    }
+  }
+
+  /** Returns the index of the first cluster whose cell is not before (column, row). */
+  private static int lowerBound(Level level, int column, int row) {
+    int low = 0;
+    int high = level.columns.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (level.columns[middle] < column
+          || (level.columns[middle] == column && level.rows[middle] < row)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
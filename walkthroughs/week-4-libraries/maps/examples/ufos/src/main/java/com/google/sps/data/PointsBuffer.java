@@ -0,0 +1,94 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes map points in a compact binary format that the browser can read with typed arrays. All
+ * numbers are little-endian:
+ *
+ * <pre>
+ * uint32 count, uint32 intColumns, uint32 textColumns
+ * int32[2 * count]             lat and lng of each point in millionths of a degree, stored as the
+ *                              difference from the previous point (the first one from 0)
+ * int32[intColumns * count]    integer columns, one after another
+ * uint32[textColumns * count]  byte lengths of the UTF-8 texts, one column after another
+ * uint8[]                      the UTF-8 texts in the same order
+ * </pre>
+ */
+public final class PointsBuffer {
+  public static final String CONTENT_TYPE = "application/octet-stream";
+  private static final double FIXED_POINT_SCALE = 1e6;
+  private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+  private PointsBuffer() {}
+
+  /**
+   * Returns a read-only buffer with the encoded points. Null texts are encoded as empty strings.
+   */
+  public static ByteBuffer encode(
+      double[] lats, double[] lngs, int[][] intColumns, String[][] textColumns) {
+    int count = lats.length;
+    byte[][][] texts = new byte[textColumns.length][count][];
+    int textsSize = 0;
+    for (int column = 0; column < textColumns.length; column++) {
+      for (int i = 0; i < count; i++) {
+        String text = textColumns[column][i];
+        texts[column][i] = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        textsSize += texts[column][i].length;
+      }
+    }
+
+    int size =
+        HEADER_SIZE
+            + Integer.BYTES * count * (2 + intColumns.length + textColumns.length)
+            + textsSize;
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(count).putInt(intColumns.length).putInt(textColumns.length);
+
+    int previousLat = 0;
+    int previousLng = 0;
+    for (int i = 0; i < count; i++) {
+      int lat = (int) Math.round(lats[i] * FIXED_POINT_SCALE);
+      int lng = (int) Math.round(lngs[i] * FIXED_POINT_SCALE);
+      buffer.putInt(lat - previousLat).putInt(lng - previousLng);
+      previousLat = lat;
+      previousLng = lng;
+    }
+    for (int[] column : intColumns) {
+      for (int i = 0; i < count; i++) {
+        buffer.putInt(column[i]);
+      }
+    }
+    for (byte[][] column : texts) {
+      for (byte[] text : column) {
+        buffer.putInt(text.length);
+      }
+    }
+    for (byte[][] column : texts) {
+      for (byte[] text : column) {
+        buffer.put(text);
+      }
+    }
+
+    // Buffer.flip(), because ByteBuffer.flip() doesn't exist on the java8 runtime
+    ((Buffer) buffer).flip();
+    return buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
@@ -14,13 +14,27 @@
 
 package com.google.sps.data;
 
-/** Represents a UFO sighting at a specific lat lng point. */
-public class UfoSighting {
+/** Represents a group of UFO sightings: their average lat lng point and their number. */
+public class UfoCluster {
   private double lat;
   private double lng;
+  private int count;
 
-  public UfoSighting(double lat, double lng) {
+  public UfoCluster(double lat, double lng, int count) {
     this.lat = lat;
     this.lng = lng;
+    this.count = count;
+  }
+
+  public double getLat() {
+    return lat;
+  }
+
+  public double getLng() {
+    return lng;
+  }
+
+  public int getCount() {
+    return count;
   }
 }
@@ -0,0 +1,204 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Stores UFO sightings in columns: parallel arrays of lats and lngs, instead of one object per
+ * sighting. The CSV file is read by a scanner that parses numbers straight from the bytes, without
+ * creating a String for every line and cell.
+ */
+public class UfoSightings {
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  /** Integers up to 2^53 are exact doubles. */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final int MAX_NUMBER_LENGTH = 64;
+
+  private final double[] lats;
+  private final double[] lngs;
+
+  private UfoSightings(double[] lats, double[] lngs) {
+    this.lats = lats;
+    this.lngs = lngs;
+  }
+
+  public int size() {
+    return lats.length;
+  }
+
+  public double[] getLats() {
+    return lats;
+  }
+
+  public double[] getLngs() {
+    return lngs;
+  }
+
+  /**
+   * Returns the sightings as a JSON array, e.g. [{"lat":38.4404675,"lng":-122.7144313}]. Numbers
+   * are formatted like Gson does.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder(lats.length * 48);
+    json.append('[');
+    for (int i = 0; i < lats.length; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"lat\":").append(lats[i]).append(",\"lng\":").append(lngs[i]).append('}');
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * Reads sightings from CSV lines with lat and lng in the first two cells. Other cells and empty
+   * lines are skipped.
+   */
+  public static UfoSightings readCsv(InputStream input) throws IOException {
+    double[] lats = new double[1024];
+    double[] lngs = new double[1024];
+    int size = 0;
+
+    NumberParser number = new NumberParser();
+    double lat = 0;
+    int cell = 0;
+    int line = 1;
+    byte[] buffer = new byte[8192];
+    boolean endOfInput = false;
+    while (!endOfInput) {
+      int read = input.read(buffer);
+      if (read < 0) {
+        // finishes the last line, even if it doesn't end with a newline
+        endOfInput = true;
+        buffer[0] = '\n';
+        read = (cell > 0 || !number.isEmpty()) ? 1 : 0;
+      }
+      for (int i = 0; i < read; i++) {
+        byte b = buffer[i];
+        if (b == '\n' && cell == 0 && number.isEmpty()) {
+          line++;
+        } else if (b == ',' || b == '\n') {
+          if (cell == 0) {
+            lat = number.getValue(line);
+          } else if (cell == 1) {
+            if (size == lats.length) {
+              lats = Arrays.copyOf(lats, size * 2);
+              lngs = Arrays.copyOf(lngs, size * 2);
+            }
+            lats[size] = lat;
+            lngs[size] = number.getValue(line);
+            size++;
+          }
+          number.reset();
+          cell++;
+          if (b == '\n') {
+            if (cell == 1) {
+              throw new IllegalArgumentException("Line " + line + " must contain lat and lng");
+            }
+            cell = 0;
+            line++;
+          }
+        } else if (b != '\r' && cell < 2 && !number.accept(b)) {
+          throw new IllegalArgumentException("Invalid number on line " + line);
+        }
+      }
+    }
+    return new UfoSightings(Arrays.copyOf(lats, size), Arrays.copyOf(lngs, size));
+  }
+
+  /**
+   * Parses a decimal number byte by byte. Numbers whose digits fit in 53 bits, like coordinates,
+   * are computed from their digits; others are passed to Double.parseDouble.
+   */
+  private static class NumberParser {
+    private final char[] chars = new char[MAX_NUMBER_LENGTH];
+    private int length;
+    private long mantissa;
+    private int significantDigits;
+    private boolean hasDigits;
+    private int fractionDigits;
+    private boolean inFraction;
+    /** Whether the number has an exponent or too many digits, so it's parsed by Double. */
+    private boolean isUnusual;
+    private boolean negative;
+
+    boolean isEmpty() {
+      return length == 0;
+    }
+
+    void reset() {
+      length = 0;
+      mantissa = 0;
+      significantDigits = 0;
+      hasDigits = false;
+      fractionDigits = 0;
+      inFraction = false;
+      isUnusual = false;
+      negative = false;
+    }
+
+    boolean accept(byte b) {
+      if (length == MAX_NUMBER_LENGTH) {
+        return false;
+      }
+      if (b >= '0' && b <= '9' && !isUnusual) {
+        hasDigits = true;
+        if (significantDigits < 18) {
+          mantissa = mantissa * 10 + (b - '0');
+          if (mantissa > 0) {
+            significantDigits++;
+          }
+          if (inFraction) {
+            fractionDigits++;
+          }
+        } else {
+          isUnusual = true;
+        }
+      } else if (b == '-' && length == 0) {
+        negative = true;
+      } else if (b == '.' && !inFraction) {
+        inFraction = true;
+      } else if (b == 'e' || b == 'E' || b == '+' || b == '-' || (b >= '0' && b <= '9')) {
+        isUnusual = true;
+      } else {
+        return false;
+      }
+      chars[length++] = (char) b;
+      return true;
+    }
+
+    double getValue(int line) {
+      if (!hasDigits) {
+        throw new IllegalArgumentException("Missing number on line " + line);
+      }
+      if (!isUnusual && mantissa < MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+        // both operands are exact, so the division is rounded once, just like Double.parseDouble
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+      }
+      try {
+        return Double.parseDouble(new String(chars, 0, length));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid number on line " + line, e);
+      }
+    }
+  }
+}
@@ -14,45 +14,125 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.data.UfoSighting;
+import com.google.sps.data.GridClusters;
+import com.google.sps.data.PointsBuffer;
+import com.google.sps.data.UfoCluster;
+import com.google.sps.data.UfoSightings;
 import com.google.gson.Gson;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Scanner;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}] */
+/**
+ * Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}]
+ *
+ * <p>With a zoom parameter (and an optional bbox=south,west,north,east parameter, in the format of
+ * LatLngBounds.toUrlValue()) it returns clusters for that zoom level instead, e.g. [{"lat":
+ * 38.44, "lng": -122.71, "count": 12}]. The clusters are computed once in init(), so the response
+ * has about the same size at every zoom.
+ *
+ * <p>Sightings are kept in columns of lats and lngs, and their JSON is written once in init(), so
+ * every request only copies the same bytes.
+ *
+ * <p>Clients that send "Accept: application/octet-stream" get the points in the binary format of
+ * PointsBuffer instead, with the count of sightings as the only int column of clusters.
+ */
 @WebServlet("/ufo-data")
 public class UfoDataServlet extends HttpServlet {
 
-  private Collection<UfoSighting> ufoSightings;
+  private byte[] ufoSightingsJson;
+  private ByteBuffer ufoSightingsBinary;
+  private GridClusters clusters;
 
   @Override
   public void init() {
-    ufoSightings = new ArrayList<>();
-
-    Scanner scanner = new Scanner(getServletContext().getResourceAsStream("/WEB-INF/ufo-data.csv"));
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      String[] cells = line.split(",");
-
-      double lat = Double.parseDouble(cells[0]);
-      double lng = Double.parseDouble(cells[1]);
-
-      ufoSightings.add(new UfoSighting(lat, lng));
+    UfoSightings ufoSightings;
+    try (InputStream csv = getServletContext().getResourceAsStream("/WEB-INF/ufo-data.csv")) {
+      ufoSightings = UfoSightings.readCsv(csv);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read ufo-data.csv", e);
     }
-    scanner.close();
+
+    ufoSightingsJson = ufoSightings.toJson().getBytes(StandardCharsets.UTF_8);
+    ufoSightingsBinary =
+        PointsBuffer.encode(
+            ufoSightings.getLats(), ufoSightings.getLngs(), new int[0][], new String[0][]);
+    clusters = new GridClusters(ufoSightings.getLats(), ufoSightings.getLngs());
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String zoomParameter = request.getParameter("zoom");
+    String bboxParameter = request.getParameter("bbox");
+    String accept = request.getHeader("Accept");
+    boolean binary = accept != null && accept.contains(PointsBuffer.CONTENT_TYPE);
+    response.setHeader("Vary", "Accept");
+
+    if (zoomParameter == null && binary) {
+      writeBinary(ufoSightingsBinary, response);
+      return;
+    }
+    if (zoomParameter == null) {
+      response.setContentType("application/json");
+      response.setContentLength(ufoSightingsJson.length);
+      response.getOutputStream().write(ufoSightingsJson);
+      return;
+    }
+
+    List<UfoCluster> data;
+    try {
+      int zoom = Integer.parseInt(zoomParameter);
+      if (bboxParameter == null) {
+        data = clusters.getClusters(zoom);
+      } else {
+        String[] bbox = bboxParameter.split(",");
+        if (bbox.length != 4) {
+          throw new NumberFormatException("Expected south,west,north,east: " + bboxParameter);
+        }
+        data =
+            clusters.getClusters(
+                zoom,
+                Double.parseDouble(bbox[0]),
+                Double.parseDouble(bbox[1]),
+                Double.parseDouble(bbox[2]),
+                Double.parseDouble(bbox[3]));
+      }
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    if (binary) {
+      double[] lats = new double[data.size()];
+      double[] lngs = new double[data.size()];
+      int[][] counts = new int[1][data.size()];
+      for (int i = 0; i < data.size(); i++) {
+        lats[i] = data.get(i).getLat();
+        lngs[i] = data.get(i).getLng();
+        counts[0][i] = data.get(i).getCount();
+      }
+      writeBinary(PointsBuffer.encode(lats, lngs, counts, new String[0][]), response);
+      return;
+    }
+
     response.setContentType("application/json");
     Gson gson = new Gson();
-    String json = gson.toJson(ufoSightings);
+    String json = gson.toJson(data);
     response.getWriter().println(json);
   }
+
+  /** Writes points encoded by PointsBuffer without changing the shared buffer. */
+  private static void writeBinary(ByteBuffer points, HttpServletResponse response)
+      throws IOException {
+    response.setContentType(PointsBuffer.CONTENT_TYPE);
+    response.setContentLength(points.remaining());
+    Channels.newChannel(response.getOutputStream()).write(points.duplicate());
+  }
 }
@@ -12,16 +12,59 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches UFO sightings data from the server and displays it in a map. */
+/**
+ * Decodes points sent by the server in the PointsBuffer format: a little-endian
+ * header (count, int columns, text columns), lat lng deltas in millionths of a
+ * degree, then the int columns. Typed arrays use the platform byte order, which
+ * is little-endian in every browser.
+ */
+function decodePoints(buffer) {
+  const [count, intColumns] = new Uint32Array(buffer, 0, 2);
+  const coordinates = new Int32Array(buffer, 3 * 4, 2 * count);
+  const ints = new Int32Array(
+      buffer, 3 * 4 + coordinates.byteLength, intColumns * count);
+
+  const points = [];
+  let lat = 0;
+  let lng = 0;
+  for (let i = 0; i < count; i++) {
+    lat += coordinates[2 * i];
+    lng += coordinates[2 * i + 1];
+    const values = [];
+    for (let column = 0; column < intColumns; column++) {
+      values.push(ints[column * count + i]);
+    }
+    points.push({lat: lat / 1e6, lng: lng / 1e6, ints: values});
+  }
+  return points;
+}
+
+/**
+ * Creates the map and shows UFO sightings clustered by the server. The clusters
+ * in view are fetched again whenever the map stops moving, in the binary format,
+ * which is several times smaller than JSON.
+ */
 function createUfoSightingsMap() {
-  fetch('/ufo-data').then(response => response.json()).then((ufoSightings) => {
-    const map = new google.maps.Map(
-        document.getElementById('map'),
-        {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
+  const map = new google.maps.Map(
+      document.getElementById('map'),
+      {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
 
-    ufoSightings.forEach((ufoSighting) => {
-      new google.maps.Marker(
-          {position: {lat: ufoSighting.lat, lng: ufoSighting.lng}, map: map});
-    });
+  let markers = [];
+  map.addListener('idle', () => {
+    const url = '/ufo-data?zoom=' + map.getZoom() +
+        '&bbox=' + map.getBounds().toUrlValue();
+    fetch(url, {headers: {'Accept': 'application/octet-stream'}})
+        .then(response => response.arrayBuffer())
+        .then((buffer) => {
+          markers.forEach((marker) => marker.setMap(null));
+          markers = decodePoints(buffer).map((ufoCluster) => {
+            const count = ufoCluster.ints[0];
+            return new google.maps.Marker({
+              position: {lat: ufoCluster.lat, lng: ufoCluster.lng},
+              label: count > 1 ? String(count) : null,
+              map: map
+            });
+          });
+        });
   });
 }